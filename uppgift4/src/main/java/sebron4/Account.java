@@ -1,129 +1,483 @@
 package sebron4;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serial;
 import java.io.Serializable;
-import java.text.NumberFormat;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
 
 /**
  * Represents a bank account with basic functionality such as deposits,
  * withdrawals, and transaction tracking. This class serves as an abstract
  * base class for different types of accounts like SavingsAccount and
- * CreditAccount.
+ * CreditAccount. Rates, fees and the credit limit come from the account's
+ * {@link AccountProduct}, so any product can use any of the subclasses.
  * @author Sebastian Rone, sebron-4
  */
-public abstract class Account implements Serializable {
+public abstract class Account implements AccountView, Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
+    @Serial
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("accountNumber", int.class),
+            new ObjectStreamField("accountType", String.class), // Name of the product, resolved through AccountProducts when read
+            new ObjectStreamField("balanceOre", long.class),
+            new ObjectStreamField("transactions", List.class), // Written as a list of Transaction, held in a TransactionLog
+            new ObjectStreamField("checkpoints", List.class),
+            new ObjectStreamField("firstWithdrawalFree", boolean.class)
+    };
+    private static volatile TransactionLogFactory transactionLogFactory = TransactionLogFactory.HEAP; // Creates the log of each account
+    private static volatile BankClock clock = BankClock.SYSTEM; // Source of transaction timestamps
+    private static final ThreadLocal<List<Account>> READ_ACCOUNTS = new ThreadLocal<>(); // Accounts read by this thread's current load, if tracked
+
     protected int accountNumber; // Unique identifier for the account
-    protected double balance; // Current balance of the account
-    protected String accountType; // Type of the account (e.g., Savings, Credit)
-    protected List<Transaction> transactions; // List of transactions associated with the account
+    protected long balanceOre; // Current balance of the account, in öre
+    protected String accountType; // Type of the account (e.g., Savings, Credit), the name of its product
+    protected boolean firstWithdrawalFree; // Whether the next withdrawal is the first one, which is free of charge
+    private transient AccountProduct product; // Rates, fees and credit limit of the account
+    private transient TransactionLog transactionLog; // Transactions associated with the account, in time order
+    private transient List<Transaction> transactionView; // Lazily created read-only view of the log
+    private transient List<BalanceCheckpoint> checkpoints = new ArrayList<>(); // Daily summaries of compacted history, oldest first
+    private transient Customer owner; // Customer holding the account, restored by BankLogic after loading
+    private transient BalanceIndex balanceIndex; // Index notified of balance changes, or null if not indexed
+    private transient long version; // Number of changes to the balance, which is all the formatted details depend on
+    private transient String formattedDetails; // Formatted account details, or null if not formatted yet
+    private transient long formattedVersion; // Version the formatted details were created at
 
     /**
-     * Constructs an Account with the specified account number.
+     * Constructs an Account of a product with the specified account number.
      *
      * @param accountNumber the unique identifier for the account
+     * @param product the product of the account, which holds its rates, fees and credit limit
      */
-    public Account(int accountNumber) {
+    protected Account(int accountNumber, AccountProduct product) {
         this.accountNumber = accountNumber; // Set the account number
-        this.balance = 0; // Initialize balance to 0
-        this.transactions = new ArrayList<>(); // Initialize the transaction list
+        this.product = product;
+        this.accountType = product.getName(); // The account type is the product name
+        this.firstWithdrawalFree = true; // Allow the first withdrawal to be free
+        this.balanceOre = 0; // Initialize balance to 0
+        this.transactionLog = transactionLogFactory.create(accountNumber); // Initialize the transaction log
+    }
+
+    /**
+     * Sets how the transaction history of accounts created or loaded from now on is stored.
+     * Accounts that already exist keep their log.
+     *
+     * @param factory the factory that creates each account's transaction log
+     */
+    public static void setTransactionLogFactory(TransactionLogFactory factory) {
+        if (factory == null) {
+            throw new IllegalArgumentException("factory must not be null");
+        }
+        transactionLogFactory = factory;
+    }
+
+    /**
+     * Sets the clock that deposits and withdrawals take their timestamps from.
+     *
+     * @param clock the clock, for example {@link BankClock#SYSTEM}, a {@link CachedClock} or a {@link FixedClock}
+     */
+    public static void setClock(BankClock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("clock must not be null");
+        }
+        Account.clock = clock;
+    }
+
+    /**
+     * Gets the clock that deposits and withdrawals take their timestamps from.
+     *
+     * @return the clock
+     */
+    public static BankClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Sets the balance of the account. All balance changes go through this method so the
+     * balance index and the version are updated while the account lock is held.
+     *
+     * @param balanceOre the new balance to set for the account, in öre
+     */
+    public synchronized void setBalanceOre(long balanceOre) {
+        long oldBalanceOre = this.balanceOre;
+        this.balanceOre = balanceOre; // Update the balance
+        version++; // Makes the formatted details out of date
+        if (balanceIndex != null) {
+            balanceIndex.balanceChanged(this, oldBalanceOre); // Keep the balance index in step
+        }
     }
 
     /**
-     * Sets the balance of the account.
+     * Sets the balance of the account from an amount in kronor, rounded to whole öre.
      *
-     * @param balance the new balance to set for the account
+     * @param balance the new balance to set for the account, in kronor
      */
     public void setBalance(double balance) {
-        this.balance = balance; // Update the balance
+        setBalanceOre(Money.ofKronor(balance));
+    }
+
+    /**
+     * Deposits an amount into the account and records the transaction.
+     *
+     * @param amountOre the amount to deposit in öre (must be greater than 0)
+     * @return true if the deposit was successful; false if the amount is invalid or would
+     *         take the balance beyond what can be held in öre
+     * @throws IllegalStateException if the transaction log has been closed; nothing is changed
+     */
+    public synchronized boolean deposit(long amountOre) {
+        if (amountOre <= 0 || balanceOre > Long.MAX_VALUE - amountOre) {
+            return false; // Invalid deposit amount, or the balance would overflow
+        }
+        recordTransaction(TransactionType.DEPOSIT, amountOre, balanceOre + amountOre); // Record the transaction
+        setBalanceOre(balanceOre + amountOre); // Update balance
+        return true;
+    }
+
+    /**
+     * Records a transaction that is about to change the balance, timestamped by the account
+     * clock. Must be called with the account lock held, before the balance is updated, so that a
+     * log that can no longer be appended to, for example one closed when the account was
+     * replaced by a load, fails the transaction before anything has changed.
+     *
+     * @param type the kind of transaction
+     * @param amountOre the amount, negative for withdrawals, in öre
+     * @param balanceAfterOre the balance the transaction leaves, in öre
+     */
+    protected void recordTransaction(TransactionType type, long amountOre, long balanceAfterOre) {
+        long timestamp = clock.millis();
+        int size = transactionLog.size();
+        if (size > 0) {
+            timestamp = Math.max(timestamp, transactionLog.timestampAt(size - 1)); // Keep the log in time order if the clock steps back
+        }
+        transactionLog.append(timestamp, type, amountOre, balanceAfterOre);
+    }
+
+    /**
+     * Sets the balance index to notify of balance changes. Takes the account lock, so no balance
+     * change in progress reports to an index the account has been detached from.
+     *
+     * @param balanceIndex the index, or null to stop notifying
+     */
+    synchronized void setBalanceIndex(BalanceIndex balanceIndex) {
+        this.balanceIndex = balanceIndex;
     }
 
     /**
-     * Retrieves the list of transactions associated with the account.
+     * Retrieves the list of transactions associated with the account. The list is a read-only
+     * view of the transaction log, so depending on how the log is stored each element may be
+     * created when it is read.
      *
      * @return a list of transactions
      */
     public List<Transaction> getTransactions() {
-        return transactions; // Return the transaction list
+        if (transactionView == null) {
+            transactionView = new AbstractList<>() {
+                @Override
+                public Transaction get(int index) {
+                    return transactionLog.get(index);
+                }
+
+                @Override
+                public int size() {
+                    return transactionLog.size();
+                }
+            };
+        }
+        return transactionView;
     }
 
     /**
-     * Returns a formatted string containing account details, including
-     * account number, balance, account type, and interest rate.
+     * Retrieves the transaction log of the account, for reading transactions field by field
+     * without creating Transaction objects.
      *
-     * @return a formatted string representing account details
+     * @return the transaction log
      */
-    public String getFormattedAccountDetails() {
-        NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(new Locale("sv", "SE")); // Currency formatter for SEK
-        String balanceStr = currencyFormat.format(balance); // Format the balance
+    public TransactionLog getTransactionLog() {
+        return transactionLog;
+    }
 
-        double interestRate = 0; // Initialize interestRate variable
-        if (this instanceof SavingsAccount) {
-            interestRate = ((SavingsAccount) this).getInterestRate(); // Get interest rate for SavingsAccount
-        } else if (this instanceof CreditAccount) {
-            interestRate = ((CreditAccount) this).getInterestRate(); // Get interest rate for CreditAccount
+    /**
+     * Compacts the transactions made before the given day into one balance checkpoint per
+     * day, and removes them from the transaction log. The balance can still be read with
+     * {@link #getBalanceOreAsOf(LocalDateTime)}, except between the first and the last
+     * transaction of a compacted day.
+     *
+     * @param before the first day whose transactions are kept in detail
+     * @return the number of transactions compacted
+     */
+    public synchronized int compactHistory(LocalDate before) {
+        int count = transactionLog.indexOfFirstAtOrAfter(Transaction.toEpochMillis(before.atStartOfDay()));
+        if (count == 0) {
+            return 0;
+        }
+        BalanceCheckpoint checkpoint = checkpoints.isEmpty() ? null : checkpoints.get(checkpoints.size() - 1);
+        for (int i = 0; i < count; i++) {
+            long timestamp = transactionLog.timestampAt(i);
+            long amountOre = transactionLog.amountAt(i);
+            long balanceAfterOre = transactionLog.balanceAfterAt(i);
+            if (checkpoint == null || timestamp >= checkpoint.getEndMillis()) {
+                // First transaction of a new day
+                checkpoint = new BalanceCheckpoint(Transaction.toLocalDateTime(timestamp).toLocalDate(), balanceAfterOre - amountOre);
+                checkpoints.add(checkpoint);
+            }
+            checkpoint.add(timestamp, transactionLog.typeAt(i), amountOre, balanceAfterOre);
         }
 
-        String interestStr = formatInterestRate(interestRate); // Format interest rate
-
-        // Format for account details
-        return String.format("%d %s %s %s", accountNumber, balanceStr, accountType, interestStr);
+        // Move the transactions that are kept to a fresh log
+        TransactionLog kept = transactionLogFactory.create(accountNumber);
+        for (int i = count; i < transactionLog.size(); i++) {
+            kept.append(transactionLog.timestampAt(i), transactionLog.typeAt(i), transactionLog.amountAt(i), transactionLog.balanceAfterAt(i));
+        }
+        TransactionLog replaced = transactionLog;
+        transactionLog = kept;
+        replaced.close(); // Release its segment file, if any
+        return count;
     }
 
     /**
-     * Formats the interest rate for display.
+     * Starts or stops collecting the accounts read from a stream on the current thread, so that a
+     * load that fails partway can close the logs of the accounts it had already read.
      *
-     * @param interestRate the interest rate to format
-     * @return a formatted string representation of the interest rate
+     * @param into the list each account read is added to, or null to stop collecting
      */
-    private String formatInterestRate(double interestRate) {
-        // Check for specific values and format accordingly
-        if (interestRate == 5.0 || interestRate == -5.0) {
-            return (interestRate < 0 ? "-" : "") + "5 %"; // Handle 5% formatting
-        } else if (interestRate == 1.1 || interestRate == -1.1) {
-            return (interestRate < 0 ? "-" : "") + "1,1 %"; // Handle 1.1% formatting
-        } else if (interestRate == 2.4 || interestRate == -2.4) {
-            return (interestRate < 0 ? "-" : "") + "2,4 %"; // Handle 2.4% formatting
+    static void collectReadAccounts(List<Account> into) {
+        if (into == null) {
+            READ_ACCOUNTS.remove();
         } else {
-            return String.format("%.1f %%", interestRate).replace(".", ","); // Default formatting with proper locale
+            READ_ACCOUNTS.set(into);
+        }
+    }
+
+    /**
+     * Closes the transaction log once the account has been removed from the bank, which
+     * releases what the log holds outside the heap. The history cannot be read afterwards.
+     */
+    synchronized void closeTransactionLog() {
+        transactionLog.close();
+    }
+
+    /**
+     * Retrieves the daily balance checkpoints that compacted history has been replaced by.
+     *
+     * @return the checkpoints, oldest first
+     */
+    public synchronized List<BalanceCheckpoint> getBalanceCheckpoints() {
+        return Collections.unmodifiableList(new ArrayList<>(checkpoints));
+    }
+
+    /**
+     * Retrieves the balance the account had at the given time. Within the transactions still
+     * kept in detail this is the balance after the last transaction at or before the time,
+     * found by binary search. Within compacted history the checkpoint of the day is found by
+     * binary search, and it knows the balance before the first and from the last transaction
+     * of its day.
+     *
+     * @param time the time to read the balance at
+     * @return the balance at that time, in öre
+     * @throws IllegalArgumentException if the time falls between the first and the last
+     *         transaction of a compacted day, where the balance is no longer known
+     */
+    public synchronized long getBalanceOreAsOf(LocalDateTime time) {
+        long epochMillis = Transaction.toEpochMillis(time);
+        int index = transactionLog.indexOfFirstAtOrAfter(epochMillis + 1); // First transaction after the time
+        if (index > 0) {
+            return transactionLog.balanceAfterAt(index - 1);
+        }
+
+        // Before the detailed history, find the first checkpoint whose day ends after the time
+        int low = 0;
+        int high = checkpoints.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (checkpoints.get(mid).getEndMillis() <= epochMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low < checkpoints.size()) {
+            return checkpoints.get(low).getBalanceOreAt(epochMillis); // During its day, or before it
+        }
+        if (!checkpoints.isEmpty()) {
+            return checkpoints.get(low - 1).getClosingBalanceOre(); // After all compacted days
+        }
+
+        // No compacted history
+        if (transactionLog.size() > 0) {
+            return transactionLog.balanceAfterAt(0) - transactionLog.amountAt(0);
         }
+        return balanceOre; // No transactions, so the balance has not changed
+    }
+
+    /**
+     * Finds the position of the first transaction made at or after the given time. Transactions
+     * are appended in time order, so this is a binary search over their timestamps.
+     *
+     * @param time the time to search for
+     * @return the index of the first transaction at or after the time, or the number of
+     *         transactions if all of them are earlier
+     */
+    public int indexOfFirstTransactionAtOrAfter(LocalDateTime time) {
+        long epochMillis = Transaction.toEpochMillis(time);
+        if (time.getNano() % 1_000_000 != 0) {
+            epochMillis++; // Timestamps are whole milliseconds, so round the time up
+        }
+        return transactionLog.indexOfFirstAtOrAfter(epochMillis);
+    }
+
+    /**
+     * Gets the version of the account, which goes up every time the balance changes, for
+     * example on a deposit, a withdrawal or when the account is closed.
+     *
+     * @return the version of the account
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns a formatted string containing account details, including
+     * account number, balance, account type, and interest rate. The string is kept and
+     * returned again until the balance changes.
+     *
+     * @return a formatted string representing account details
+     */
+    public synchronized String getFormattedAccountDetails() {
+        if (formattedDetails != null && formattedVersion == version) {
+            return formattedDetails; // Nothing has changed since it was formatted
+        }
+        String balanceStr = SekFormat.format(balanceOre); // Format the balance
+        String interestStr = getProduct().interestRateLabel(balanceOre); // Label precomputed for the product's rate tier
+
+        // Format for account details
+        formattedDetails = String.format("%d %s %s %s", accountNumber, balanceStr, accountType, interestStr);
+        formattedVersion = version;
+        return formattedDetails;
     }
 
     /**
      * Withdraws a specified amount from the account.
      *
-     * @param amount the amount to withdraw
+     * @param amount the amount to withdraw in kronor, rounded to whole öre
+     * @return true if the withdrawal is successful; false if insufficient funds
+     *         or invalid amount is provided
+     */
+    public boolean withdraw(double amount) {
+        long amountOre;
+        try {
+            amountOre = Money.ofKronor(amount);
+        } catch (ArithmeticException e) {
+            return false; // Not a finite amount that can be held in öre
+        }
+        return withdrawOre(amountOre);
+    }
+
+    /**
+     * Withdraws a specified amount from the account. The product decides the fee, which is
+     * waived for the first withdrawal, and how far below zero the balance may go.
+     *
+     * @param amountOre the amount to withdraw in öre
      * @return true if the withdrawal is successful; false if insufficient funds
      *         or invalid amount is provided
+     * @throws IllegalStateException if the transaction log has been closed; nothing is changed
      */
-    public abstract boolean withdraw(double amount);
+    public synchronized boolean withdrawOre(long amountOre) {
+        if (amountOre <= 0) {
+            return false; // Reject invalid withdrawal amounts (0 or negative)
+        }
+
+        // Total amount to be withdrawn, with the fee if the withdrawal is not free
+        long totalWithdrawalAmount;
+        long newBalanceOre;
+        try {
+            totalWithdrawalAmount = Math.addExact(amountOre, product.withdrawalFee(amountOre, firstWithdrawalFree));
+            newBalanceOre = Math.subtractExact(balanceOre, totalWithdrawalAmount);
+        } catch (ArithmeticException e) {
+            return false; // Beyond what a long can hold, so beyond any balance and credit limit
+        }
+        if (newBalanceOre < product.getCreditLimitOre()) {
+            return false; // Not enough funds, or beyond the credit limit
+        }
+        recordTransaction(TransactionType.WITHDRAWAL, -totalWithdrawalAmount, newBalanceOre); // Log the total amount deducted
+        setBalanceOre(newBalanceOre); // Deduct the total withdrawal amount from the balance
+        firstWithdrawalFree = false; // Subsequent withdrawals incur fees
+        return true;
+    }
 
     /**
-     * Closes the account and returns the final balance after applying any final
-     * adjustments (e.g., interest).
+     * Closes the account and returns the final balance after adding the interest the
+     * product gives on the current balance.
      *
-     * @return the final balance of the account upon closure
+     * @return the final balance of the account upon closure, in kronor
      */
-    public abstract double closeAccount();
+    public synchronized double closeAccount() {
+        long interest = product.interest(balanceOre); // Calculate interest based on current balance
+        setBalanceOre(balanceOre + interest); // Add interest when closing the account
+        return Money.toKronor(balanceOre); // Return the final balance including interest
+    }
 
     /**
      * Returns the interest rate of the account.
      *
-     * @return the interest rate
+     * @return the interest rate in percent
      */
-    public abstract double getInterestRate();
+    public double getInterestRate() {
+        return Money.toPercent(getInterestRateBasisPoints());
+    }
+
+    /**
+     * Returns the interest rate of the account in basis points (1 % = 100 basis points), as
+     * given by its product for the current balance.
+     *
+     * @return the interest rate in basis points
+     */
+    public synchronized long getInterestRateBasisPoints() {
+        return getProduct().interestRateBasisPoints(balanceOre);
+    }
+
+    /**
+     * Returns the interest rate of the account for display, for example "2,4 %".
+     *
+     * @return the interest rate label
+     */
+    public synchronized String getInterestRateLabel() {
+        return getProduct().interestRateLabel(balanceOre);
+    }
+
+    /**
+     * Returns the product of the account, which holds its rates, fees and credit limit.
+     *
+     * @return the account product
+     */
+    public AccountProduct getProduct() {
+        return product;
+    }
 
     /**
      * Retrieves the current balance of the account.
      *
-     * @return the balance of the account
+     * @return the balance of the account, in kronor
+     */
+    public synchronized double getBalance() {
+        return Money.toKronor(balanceOre); // Return the current balance
+    }
+
+    /**
+     * Retrieves the current balance of the account in öre.
+     *
+     * @return the exact balance of the account, in öre
      */
-    public double getBalance() {
-        return balance; // Return the current balance
+    public synchronized long getBalanceOre() {
+        return balanceOre; // Return the current balance
     }
 
     /**
@@ -135,6 +489,24 @@ public abstract class Account implements Serializable {
         return accountType; // Return the account type
     }
 
+    /**
+     * Retrieves the customer that holds the account.
+     *
+     * @return the owning customer, or null if the account is not held by any customer
+     */
+    public Customer getOwner() {
+        return owner; // Return the owning customer
+    }
+
+    /**
+     * Sets the customer that holds the account.
+     *
+     * @param owner the owning customer, or null when the account is removed
+     */
+    void setOwner(Customer owner) {
+        this.owner = owner; // Update the owning customer
+    }
+
     /**
      * Retrieves the account number.
      *
@@ -143,4 +515,68 @@ public abstract class Account implements Serializable {
     public int getAccountNumber() {
         return accountNumber; // Return the account number
     }
+
+    /**
+     * Writes the account with its transactions as a list of Transaction, the same form older
+     * versions wrote. The list holds the whole history, so however the log stores it, the
+     * history of the account is on the heap while it is written.
+     *
+     * @param out the stream to write to
+     * @throws IOException if an I/O error occurs
+     */
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("accountNumber", accountNumber);
+        fields.put("accountType", accountType);
+        synchronized (this) {
+            fields.put("balanceOre", balanceOre);
+            fields.put("transactions", new ArrayList<>(getTransactions())); // Copy of the log as objects
+            fields.put("checkpoints", new ArrayList<>(checkpoints));
+            fields.put("firstWithdrawalFree", firstWithdrawalFree);
+        }
+        out.writeFields();
+    }
+
+    /**
+     * Reads an account, converting the double balance written by older versions to öre, and
+     * fills a new transaction log from the transactions read. The transactions are read as one
+     * list before the log is filled. Accounts written before history could be compacted have
+     * no checkpoints.
+     *
+     * @param in the stream to read from
+     * @throws IOException if an I/O error occurs
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found
+     */
+    @Serial
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        accountNumber = fields.get("accountNumber", 0);
+        accountType = NamePool.shared().intern((String) fields.get("accountType", null)); // Same few types for every account
+        product = AccountProducts.get(accountType);
+        if (product == null) {
+            throw new InvalidObjectException("Unknown account product: " + accountType);
+        }
+        firstWithdrawalFree = fields.get("firstWithdrawalFree", true); // Savings accounts read the older flag themselves
+        transactionLog = transactionLogFactory.create(accountNumber);
+        List<Account> readAccounts = READ_ACCOUNTS.get();
+        if (readAccounts != null) {
+            readAccounts.add(this); // Closed by the load if it fails
+        }
+        List<Transaction> transactions = (List<Transaction>) fields.get("transactions", null);
+        if (transactions != null) {
+            for (Transaction transaction : transactions) {
+                transactionLog.append(transaction.getEpochMillis(), transaction.getType(),
+                        transaction.getAmountOre(), transaction.getBalanceAfterOre());
+            }
+        }
+        List<BalanceCheckpoint> savedCheckpoints = (List<BalanceCheckpoint>) fields.get("checkpoints", null);
+        checkpoints = savedCheckpoints != null ? new ArrayList<>(savedCheckpoints) : new ArrayList<>();
+        if (fields.defaulted("balanceOre")) {
+            balanceOre = Money.ofKronor(fields.get("balance", 0.0)); // Written before balances were fixed-point
+        } else {
+            balanceOre = fields.get("balanceOre", 0L);
+        }
+    }
 }
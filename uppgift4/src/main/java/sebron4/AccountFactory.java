@@ -0,0 +1,18 @@
+package sebron4;
+
+/**
+ * Creates an empty account of a product, for example {@code SavingsAccount::new}. The product
+ * is handed to the account, so one factory can serve any number of products.
+ * @author Sebastian Rone, sebron-4
+ */
+@FunctionalInterface
+public interface AccountFactory {
+    /**
+     * Creates an account.
+     *
+     * @param accountNumber the number of the new account
+     * @param product the product of the new account
+     * @return the account
+     */
+    Account create(int accountNumber, AccountProduct product);
+}
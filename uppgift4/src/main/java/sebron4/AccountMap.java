@@ -0,0 +1,133 @@
+package sebron4;
+
+import java.util.Arrays;
+
+/**
+ * A map from account number to account, keyed directly on the primitive int so that
+ * lookups never box the key. Accounts are kept in insertion order in dense arrays;
+ * once the map grows past a handful of accounts an open-addressing hash table pointing
+ * into the dense arrays is added, see {@link DenseHashTable}.
+ *
+ * An empty map shares static empty arrays and allocates nothing until the first account
+ * is added, which matters for the many customers that hold no accounts at all.
+ * @author Sebastian Rone, sebron-4
+ */
+public class AccountMap extends DenseHashTable<Account> {
+    private static final int[] EMPTY_KEYS = {}; // Shared by every empty map
+
+    private int[] keys = EMPTY_KEYS; // Account numbers in insertion order, stale where an entry was removed
+
+    /**
+     * Constructs an empty map. No arrays are allocated until an account is added.
+     */
+    public AccountMap() {
+    }
+
+    /**
+     * Returns the account with the given account number.
+     *
+     * @param accountNumber the account number to look up
+     * @return the account, or null if no account has that number
+     */
+    public Account get(int accountNumber) {
+        int entry = indexOf(accountNumber);
+        return entry < 0 ? null : valueAt(entry);
+    }
+
+    /**
+     * Checks whether an account with the given number is in the map.
+     *
+     * @param accountNumber the account number to look up
+     * @return true if the map contains the account number
+     */
+    public boolean containsKey(int accountNumber) {
+        return indexOf(accountNumber) >= 0;
+    }
+
+    /**
+     * Adds an account under its own account number. A new account is placed last in
+     * iteration order; an account replacing an existing mapping keeps its position.
+     *
+     * @param account the account to add
+     * @return the account previously stored under the same number, or null
+     */
+    public Account put(Account account) {
+        int accountNumber = account.getAccountNumber();
+        int entry = indexOf(accountNumber);
+        if (entry >= 0) {
+            return replace(entry, account); // Replace the existing mapping in place
+        }
+        entry = newEntry();
+        keys[entry] = accountNumber;
+        link(entry, account);
+        return null;
+    }
+
+    /**
+     * Removes the account with the given account number in amortized constant time.
+     *
+     * @param accountNumber the account number to remove
+     * @return the removed account, or null if the number was not in the map
+     */
+    public Account remove(int accountNumber) {
+        int entry = indexOf(accountNumber);
+        return entry < 0 ? null : removeEntry(entry);
+    }
+
+    @Override
+    protected int hashAt(int entry) {
+        return hash(keys[entry]);
+    }
+
+    @Override
+    protected void moveKey(int from, int to) {
+        keys[to] = keys[from];
+    }
+
+    @Override
+    protected void resizeKeys(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+    }
+
+    @Override
+    protected void clearKeys() {
+        keys = EMPTY_KEYS;
+    }
+
+    /**
+     * Finds the dense entry index of an account number.
+     *
+     * @param accountNumber the account number to look up
+     * @return the entry index, or -1 if the number is not in the map
+     */
+    private int indexOf(int accountNumber) {
+        if (isEmpty()) {
+            return -1;
+        }
+        if (!isHashed()) {
+            for (int entry = 0; entry < used(); entry++) {
+                if (keys[entry] == accountNumber && valueAt(entry) != null) {
+                    return entry; // Small maps are scanned linearly, skipping removed entries
+                }
+            }
+            return -1;
+        }
+        for (int slot = firstSlot(hash(accountNumber)); ; slot = nextSlot(slot)) {
+            int entry = entryAt(slot);
+            if (entry < 0 || keys[entry] == accountNumber) {
+                return entry; // Found, or reached an empty slot so the key is absent
+            }
+        }
+    }
+
+    /**
+     * Spreads sequential account numbers over the table.
+     *
+     * @param key the account number
+     * @return the mixed hash
+     */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9; // Fibonacci hashing
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,107 @@
+package sebron4;
+
+/**
+ * An account product: the name, rates, fees and credit limit shared by every account of one
+ * kind. Rates and fees are held in basis points and looked up from small tables, so applying
+ * them is one call on the product with no type tests. New products are added by registering
+ * them in {@link AccountProducts}.
+ * @author Sebastian Rone, sebron-4
+ */
+public class AccountProduct {
+    private final String name; // Account type shown to customers, e.g. "Sparkonto"
+    private final long[] interestRateBasisPoints; // Interest rate for negative (0) and zero or positive (1) balances
+    private final String[] interestRateLabels; // Display label of each rate in interestRateBasisPoints, e.g. "2,4 %"
+    private final long withdrawalFeeBasisPoints; // Fee on withdrawals that are not free
+    private final long creditLimitOre; // Lowest balance a withdrawal may leave, in öre
+    private final AccountFactory factory; // Creates an account of this product from an account number
+
+    /**
+     * Constructs a product.
+     *
+     * @param name the account type shown to customers
+     * @param positiveRateBasisPoints the interest rate for zero or positive balances, in basis points
+     * @param negativeRateBasisPoints the interest rate for negative balances, in basis points
+     * @param withdrawalFeeBasisPoints the fee on withdrawals that are not free, in basis points
+     * @param creditLimitOre the lowest balance a withdrawal may leave, in öre (0 for no credit)
+     * @param factory creates an account of this product, for example {@code SavingsAccount::new}
+     */
+    public AccountProduct(String name, long positiveRateBasisPoints, long negativeRateBasisPoints,
+                          long withdrawalFeeBasisPoints, long creditLimitOre, AccountFactory factory) {
+        this.name = name;
+        this.interestRateBasisPoints = new long[] {negativeRateBasisPoints, positiveRateBasisPoints};
+        this.interestRateLabels = new String[] {SekEncoder.rateLabel(negativeRateBasisPoints), SekEncoder.rateLabel(positiveRateBasisPoints)};
+        this.withdrawalFeeBasisPoints = withdrawalFeeBasisPoints;
+        this.creditLimitOre = creditLimitOre;
+        this.factory = factory;
+    }
+
+    /**
+     * Gets the account type shown to customers.
+     *
+     * @return the product name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the interest rate that applies to a balance.
+     *
+     * @param balanceOre the balance, in öre
+     * @return the interest rate in basis points
+     */
+    public long interestRateBasisPoints(long balanceOre) {
+        return interestRateBasisPoints[balanceOre >= 0 ? 1 : 0];
+    }
+
+    /**
+     * Gets the display label of the interest rate that applies to a balance. The labels are
+     * formatted once, when the product is created.
+     *
+     * @param balanceOre the balance, in öre
+     * @return the interest rate label, for example "2,4 %"
+     */
+    public String interestRateLabel(long balanceOre) {
+        return interestRateLabels[balanceOre >= 0 ? 1 : 0];
+    }
+
+    /**
+     * Calculates the interest on a balance, rounded with {@link Money#CALCULATION_ROUNDING}.
+     *
+     * @param balanceOre the balance, in öre
+     * @return the interest, in öre
+     */
+    public long interest(long balanceOre) {
+        return Money.applyRate(balanceOre, interestRateBasisPoints(balanceOre), Money.CALCULATION_ROUNDING);
+    }
+
+    /**
+     * Calculates the fee on a withdrawal, rounded with {@link Money#CALCULATION_ROUNDING}.
+     *
+     * @param amountOre the amount withdrawn, in öre
+     * @param free whether the withdrawal is free of charge
+     * @return the fee, in öre
+     */
+    public long withdrawalFee(long amountOre, boolean free) {
+        return free ? 0 : Money.applyRate(amountOre, withdrawalFeeBasisPoints, Money.CALCULATION_ROUNDING);
+    }
+
+    /**
+     * Gets the lowest balance a withdrawal may leave.
+     *
+     * @return the credit limit, in öre
+     */
+    public long getCreditLimitOre() {
+        return creditLimitOre;
+    }
+
+    /**
+     * Creates a new, empty account of this product.
+     *
+     * @param accountNumber the number of the new account
+     * @return the account
+     */
+    public Account open(int accountNumber) {
+        return factory.create(accountNumber, this);
+    }
+}
@@ -0,0 +1,58 @@
+package sebron4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The registry of account products the bank offers, looked up by name.
+ * @author Sebastian Rone, sebron-4
+ */
+public final class AccountProducts {
+    /** Savings account: 2.4 % interest, 2 % fee on every withdrawal after the first, no credit. */
+    public static final AccountProduct SAVINGS = new AccountProduct("Sparkonto", 240, 240, 200, 0, SavingsAccount::new);
+    /** Credit account: 1.1 % interest on credit, 5 % on debt, no withdrawal fee, credit up to 5 000 kr. */
+    public static final AccountProduct CREDIT = new AccountProduct("Kreditkonto", 110, 500, 0, -500_000, CreditAccount::new);
+
+    private static final Map<String, AccountProduct> PRODUCTS = new ConcurrentHashMap<>(); // Products by name
+
+    static {
+        register(SAVINGS);
+        register(CREDIT);
+    }
+
+    private AccountProducts() {
+    }
+
+    /**
+     * Adds a product to the registry.
+     *
+     * @param product the product to add
+     * @throws IllegalArgumentException if a product with the same name is already registered
+     */
+    public static void register(AccountProduct product) {
+        if (PRODUCTS.putIfAbsent(product.getName(), product) != null) {
+            throw new IllegalArgumentException("Product already registered: " + product.getName());
+        }
+    }
+
+    /**
+     * Looks up a product by name.
+     *
+     * @param name the product name, e.g. "Sparkonto"
+     * @return the product, or null if there is none with that name
+     */
+    public static AccountProduct get(String name) {
+        return PRODUCTS.get(name);
+    }
+
+    /**
+     * Returns all registered products.
+     *
+     * @return a list of the products
+     */
+    public static List<AccountProduct> all() {
+        return new ArrayList<>(PRODUCTS.values());
+    }
+}
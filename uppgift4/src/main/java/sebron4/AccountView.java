@@ -0,0 +1,36 @@
+package sebron4;
+
+/**
+ * A read-only view of an account, handed out by the streaming methods of {@link BankLogic}.
+ * Account implements it directly, so no wrapper objects are created.
+ * @author Sebastian Rone, sebron-4
+ */
+public interface AccountView {
+    /**
+     * Gets the account number.
+     *
+     * @return the account number
+     */
+    int getAccountNumber();
+
+    /**
+     * Gets the current balance.
+     *
+     * @return the balance
+     */
+    double getBalance();
+
+    /**
+     * Gets the account type, for example "Sparkonto".
+     *
+     * @return the account type
+     */
+    String getAccountType();
+
+    /**
+     * Gets the current interest rate in percent.
+     *
+     * @return the interest rate
+     */
+    double getInterestRate();
+}
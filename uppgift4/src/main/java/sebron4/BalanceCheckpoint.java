@@ -0,0 +1,154 @@
+package sebron4;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * The balance of an account at the end of a day, together with a summary of the transactions
+ * made that day. When old transaction history is compacted, each day of it is replaced by one
+ * checkpoint, so the balance at any earlier day can still be answered without the detail.
+ * The times of the first and last transaction of the day are kept as well, so the balance is
+ * also known at any time of the day before the first transaction or from the last one on.
+ * @author Sebastian Rone, sebron-4
+ */
+public class BalanceCheckpoint implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    private final LocalDate date; // Day summarized by the checkpoint
+    private final long endMillis; // Start of the following day, in milliseconds since the epoch
+    private long firstMillis; // Time of the first transaction of the day, in milliseconds since the epoch
+    private long lastMillis; // Time of the last transaction of the day, in milliseconds since the epoch
+    private int transactionCount; // Number of transactions made during the day
+    private long depositsOre; // Sum of the deposits made during the day, in öre
+    private long withdrawalsOre; // Sum of the withdrawals made during the day, as a positive amount in öre
+    private long closingBalanceOre; // Balance after the last transaction of the day, in öre
+
+    /**
+     * Constructs an empty checkpoint for a day.
+     *
+     * @param date the day to summarize
+     * @param openingBalanceOre the balance at the start of the day, in öre
+     */
+    public BalanceCheckpoint(LocalDate date, long openingBalanceOre) {
+        this.date = date;
+        this.endMillis = Transaction.toEpochMillis(date.plusDays(1).atStartOfDay());
+        this.closingBalanceOre = openingBalanceOre;
+    }
+
+    /**
+     * Adds a transaction made during the day to the summary. Transactions are added in time order.
+     *
+     * @param timestamp the time of the transaction, in milliseconds since the epoch
+     * @param type the kind of transaction
+     * @param amountOre the amount, negative for withdrawals, in öre
+     * @param balanceAfterOre the balance after the transaction, in öre
+     */
+    void add(long timestamp, TransactionType type, long amountOre, long balanceAfterOre) {
+        if (transactionCount == 0) {
+            firstMillis = timestamp;
+        }
+        lastMillis = timestamp;
+        transactionCount++;
+        if (type == TransactionType.DEPOSIT) {
+            depositsOre = Math.addExact(depositsOre, amountOre);
+        } else {
+            withdrawalsOre = Math.subtractExact(withdrawalsOre, amountOre);
+        }
+        closingBalanceOre = balanceAfterOre;
+    }
+
+    /**
+     * Gets the day summarized by the checkpoint.
+     *
+     * @return the day
+     */
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /**
+     * Gets the end of the day, from which the closing balance applies.
+     *
+     * @return the start of the following day, in milliseconds since the epoch
+     */
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    /**
+     * Gets the number of transactions made during the day.
+     *
+     * @return the number of transactions
+     */
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * Gets the sum of the deposits made during the day.
+     *
+     * @return the deposits, in öre
+     */
+    public long getDepositsOre() {
+        return depositsOre;
+    }
+
+    /**
+     * Gets the sum of the withdrawals made during the day.
+     *
+     * @return the withdrawals as a positive amount, in öre
+     */
+    public long getWithdrawalsOre() {
+        return withdrawalsOre;
+    }
+
+    /**
+     * Gets the balance at the end of the day.
+     *
+     * @return the closing balance, in öre
+     */
+    public long getClosingBalanceOre() {
+        return closingBalanceOre;
+    }
+
+    /**
+     * Gets the balance at the start of the day.
+     *
+     * @return the opening balance, in öre
+     */
+    public long getOpeningBalanceOre() {
+        return closingBalanceOre - depositsOre + withdrawalsOre;
+    }
+
+    /**
+     * Gets the balance at a time during the day: the opening balance before the first
+     * transaction and the closing balance from the last transaction on.
+     *
+     * @param epochMillis the time, in milliseconds since the epoch, before the end of the day
+     * @return the balance at that time, in öre
+     * @throws IllegalArgumentException if the time falls between the first and the last
+     *         transaction of the day, where the detail has been compacted away
+     */
+    public long getBalanceOreAt(long epochMillis) {
+        if (transactionCount == 0 || epochMillis >= lastMillis) {
+            return closingBalanceOre;
+        }
+        if (epochMillis < firstMillis) {
+            return getOpeningBalanceOre();
+        }
+        throw new IllegalArgumentException("The balance between " + Transaction.toLocalDateTime(firstMillis) + " and "
+                + Transaction.toLocalDateTime(lastMillis) + " has been compacted");
+    }
+
+    /**
+     * Returns the checkpoint formatted for display.
+     *
+     * @return for example "2024-09-12 3 transaktioner Insättningar: 500,00 kr Uttag: 100,00 kr Saldo: 400,00 kr"
+     */
+    @Override
+    public String toString() {
+        return String.format("%s %d transaktioner Insättningar: %s Uttag: %s Saldo: %s", date, transactionCount,
+                SekFormat.format(depositsOre), SekFormat.format(withdrawalsOre), SekFormat.format(closingBalanceOre));
+    }
+}
@@ -0,0 +1,170 @@
+package sebron4;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * An ordered index of account balances, kept separately for each account product, for range
+ * queries such as "all credit accounts below -4 000 kr". Products are told apart by identity,
+ * so a registered product that reuses an account class is still indexed on its own. Accounts report every balance change
+ * to the index from inside their own synchronized balance update, so the index never lags
+ * behind an account. Range queries walk the index lazily and never lock it.
+ * @author Sebastian Rone, sebron-4
+ */
+public class BalanceIndex {
+    // One ordered set of (balance, account number) entries per account product
+    private final Map<AccountProduct, NavigableSet<Entry>> byProduct = new ConcurrentHashMap<>();
+
+    /**
+     * Adds an account to the index and makes it report its balance changes here.
+     *
+     * @param account the account to add
+     */
+    public void add(Account account) {
+        synchronized (account) {
+            account.setBalanceIndex(this);
+            entries(account.getProduct()).add(new Entry(account.getBalanceOre(), account.getAccountNumber()));
+        }
+    }
+
+    /**
+     * Removes an account from the index.
+     *
+     * @param account the account to remove
+     */
+    public void remove(Account account) {
+        synchronized (account) {
+            entries(account.getProduct()).remove(new Entry(account.getBalanceOre(), account.getAccountNumber()));
+            account.setBalanceIndex(null);
+        }
+    }
+
+    /**
+     * Removes every account from the index.
+     */
+    public void clear() {
+        byProduct.clear();
+    }
+
+    /**
+     * Moves an account to its new balance. Called by the account while it holds its own lock.
+     *
+     * @param account the account whose balance changed
+     * @param oldBalanceOre the balance before the change, in öre
+     */
+    void balanceChanged(Account account, long oldBalanceOre) {
+        NavigableSet<Entry> entries = entries(account.getProduct());
+        entries.remove(new Entry(oldBalanceOre, account.getAccountNumber()));
+        entries.add(new Entry(account.getBalanceOre(), account.getAccountNumber()));
+    }
+
+    /**
+     * Returns the numbers of accounts of the given product with a balance in [from, to),
+     * in ascending balance order.
+     *
+     * @param product the account product
+     * @param from the lowest balance to include, in öre
+     * @param to the balance to stop before, in öre
+     * @return a lazy iterator over account numbers
+     */
+    public PrimitiveIterator.OfInt range(AccountProduct product, long from, long to) {
+        if (!(from < to)) {
+            return accountNumbers(Collections.emptyNavigableSet()); // Empty range
+        }
+        return accountNumbers(entries(product).subSet(new Entry(from, Integer.MIN_VALUE), true, new Entry(to, Integer.MIN_VALUE), false));
+    }
+
+    /**
+     * Returns the numbers of accounts of the given product with a balance strictly below a limit,
+     * in ascending balance order.
+     *
+     * @param product the account product
+     * @param limit the balance limit, in öre
+     * @return a lazy iterator over account numbers
+     */
+    public PrimitiveIterator.OfInt below(AccountProduct product, long limit) {
+        return accountNumbers(entries(product).headSet(new Entry(limit, Integer.MIN_VALUE), false));
+    }
+
+    /**
+     * Returns the numbers of accounts of the given product with a balance strictly above a limit,
+     * in ascending balance order.
+     *
+     * @param product the account product
+     * @param limit the balance limit, in öre
+     * @return a lazy iterator over account numbers
+     */
+    public PrimitiveIterator.OfInt above(AccountProduct product, long limit) {
+        return accountNumbers(entries(product).tailSet(new Entry(limit, Integer.MAX_VALUE), false));
+    }
+
+    /**
+     * Returns the entry set for an account product, creating it on first use.
+     *
+     * @param product the account product
+     * @return the entries of that product
+     */
+    private NavigableSet<Entry> entries(AccountProduct product) {
+        return byProduct.computeIfAbsent(product, p -> new ConcurrentSkipListSet<>());
+    }
+
+    /**
+     * Adapts an entry set to an iterator over account numbers. The iterator is weakly
+     * consistent: it never fails because of concurrent balance changes.
+     *
+     * @param entries the entries to walk
+     * @return a lazy iterator over account numbers
+     */
+    private static PrimitiveIterator.OfInt accountNumbers(NavigableSet<Entry> entries) {
+        Iterator<Entry> iterator = entries.iterator();
+        return new PrimitiveIterator.OfInt() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public int nextInt() {
+                if (!iterator.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return iterator.next().accountNumber;
+            }
+        };
+    }
+
+    /**
+     * One account's position in the index, ordered by balance and then account number.
+     */
+    private static final class Entry implements Comparable<Entry> {
+        private final long balance; // Balance of the account in öre when the entry was added
+        private final int accountNumber; // Account the entry belongs to
+
+        private Entry(long balance, int accountNumber) {
+            this.balance = balance;
+            this.accountNumber = accountNumber;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byBalance = Long.compare(balance, other.balance);
+            return byBalance != 0 ? byBalance : Integer.compare(accountNumber, other.accountNumber);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Entry other && compareTo(other) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(balance) * 31 + accountNumber;
+        }
+    }
+}
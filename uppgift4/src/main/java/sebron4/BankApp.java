@@ -1,17 +1,23 @@
 package sebron4;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.time.LocalDate;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ConcurrentModificationException;
 
 /**
  * A JavaFX-based Bank Application GUI.
@@ -23,6 +29,10 @@ public class BankApp extends Application {
 
     private BankLogic bankLogic; // Instance of the BankLogic class to handle business logic
     private static final String FILE_DIRECTORY = "sebron4_file"; // Directory to store serialized data
+    private static final long STATEMENT_PROGRESS_MILLIS = 1000; // Time between progress reports of the month-end statements
+    // Recent transactions kept in memory per account when set with -Dsebron4.transactionsInMemory=<n>, older ones are
+    // spilled to disk; by default the whole history is kept in memory
+    private static final int TRANSACTIONS_IN_MEMORY = Integer.getInteger("sebron4.transactionsInMemory", 0);
         @Override
         public void start(Stage primaryStage) {
 
@@ -30,6 +40,12 @@ public class BankApp extends Application {
             if (!directory.exists()) {
                 directory.mkdir();
             }
+            File segments = new File(directory, "transactions");
+            TieredTransactionLog.deleteSegments(segments); // Left behind if the application did not exit cleanly
+            if (TRANSACTIONS_IN_MEMORY > 0) {
+                // Opt-in: saving and loading the bank file still hold each account's full history in memory
+                Account.setTransactionLogFactory(TransactionLogFactory.tiered(segments, TRANSACTIONS_IN_MEMORY));
+            }
 
             bankLogic = new BankLogic(); // Initialize the BankLogic instance
 
@@ -227,10 +243,10 @@ public class BankApp extends Application {
                 dialog.showAndWait().ifPresent(result -> {
                     try {
                         int accountId = Integer.parseInt(result[1]);
-                        double amount = Double.parseDouble(result[2]);
-                        boolean success = bankLogic.withdraw(result[0], accountId, amount);
+                        long amountOre = Money.parseKronor(result[2]); // Exact, no double in between
+                        boolean success = bankLogic.withdrawOre(result[0], accountId, amountOre);
                         outputArea.appendText(success ? "Uttag lyckades.\n" : "Uttag misslyckades.\n");
-                    } catch (NumberFormatException ex) {
+                    } catch (NumberFormatException | ArithmeticException ex) {
                         outputArea.appendText("Ogiltig inmatning.\n");
                     }
                 });
@@ -285,8 +301,9 @@ public class BankApp extends Application {
             // Print menu for generating account statements
             Menu printMenu = new Menu("Utskrift");
             MenuItem generateStatement = new MenuItem("Skapa kontoutdrag");
+            MenuItem generateMonthEndStatements = new MenuItem("Skapa månadsutdrag");
 
-            printMenu.getItems().add(generateStatement);
+            printMenu.getItems().addAll(generateStatement, generateMonthEndStatements);
 
             // Add menus to the menu bar
             menuBar.getMenus().addAll(fileMenu, printMenu);
@@ -321,31 +338,61 @@ public class BankApp extends Application {
 
             /**
              * Adds functionality to generate an account statement.
-             * Prompts the user for a personal number and account ID, retrieves account details, and saves them to a .txt file.
+             * Prompts the user for a personal number and account ID and writes the account details and all transactions to a .txt file.
              */
             generateStatement.setOnAction(e -> {
                 Dialog<String[]> dialog = createInputDialog(new String[]{"Personnummer", "Konto ID"});
                 dialog.showAndWait().ifPresent(result -> {
                     try {
                         int accountId = Integer.parseInt(result[1]);
-                        String accountDetails = bankLogic.getAccount(result[0], accountId);
-                        if (accountDetails == null) {
+                        if (bankLogic.getAccount(result[0], accountId) == null) {
                             outputArea.appendText("Konto eller kund hittades inte.\n");
                             return;
                         }
                         String filePath = FILE_DIRECTORY + "/statement.txt";
-                        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
-                            writer.write("Kontoutdrag - " + LocalDate.now() + "\n");
-                            writer.write(accountDetails + "\n");
+                        try (Writer writer = new OutputStreamWriter(new FileOutputStream(filePath), StandardCharsets.UTF_8)) {
+                            bankLogic.writeStatement(result[0], accountId, null, null, writer); // Streamed, whatever the length of the history
                             outputArea.appendText("Kontoutdrag sparat i: " + filePath + "\n");
                         }
-                    } catch (IOException | NumberFormatException ex) {
+                    } catch (IOException | NumberFormatException | ConcurrentModificationException ex) {
                         outputArea.appendText("Fel vid generering av kontoutdrag: " + ex.getMessage() + "\n");
                     }
                 });
             });
 
 
+            /**
+             * Adds functionality to generate the month-end statements of all accounts.
+             * Prompts the user for a month and writes one statement per account in the background,
+             * reporting progress in the output area. Running it again for the same month finishes
+             * an earlier run that was interrupted.
+             */
+            generateMonthEndStatements.setOnAction(e -> {
+                Dialog<String[]> dialog = createInputDialog(new String[]{"Månad (ÅÅÅÅ-MM)"});
+                dialog.showAndWait().ifPresent(result -> {
+                    YearMonth month;
+                    try {
+                        month = YearMonth.parse(result[0].trim());
+                    } catch (DateTimeParseException ex) {
+                        outputArea.appendText("Ogiltig månad: " + result[0] + "\n");
+                        return;
+                    }
+                    StatementBatch batch = bankLogic.createMonthEndStatements(month,
+                            Paths.get(FILE_DIRECTORY, "statements"), Runtime.getRuntime().availableProcessors());
+                    Thread thread = new Thread(() -> {
+                        try {
+                            batch.run(progress -> Platform.runLater(() -> outputArea.appendText(progress + "\n")), STATEMENT_PROGRESS_MILLIS);
+                            Platform.runLater(() -> outputArea.appendText("Månadsutdrag sparade i: " + batch.getDirectory() + "\n"));
+                        } catch (IOException | InterruptedException ex) {
+                            Platform.runLater(() -> outputArea.appendText("Fel vid generering av månadsutdrag: " + ex.getMessage() + "\n"));
+                        }
+                    }, "month-end-statements");
+                    thread.setDaemon(true);
+                    thread.start();
+                });
+            });
+
+
             Scene scene = new Scene(root, 800, 600);
         primaryStage.setScene(scene);
         primaryStage.show();
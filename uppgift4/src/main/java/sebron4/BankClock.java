@@ -0,0 +1,20 @@
+package sebron4;
+
+/**
+ * The source of transaction timestamps. Accounts read the time through the clock set with
+ * {@link Account#setClock(BankClock)}, so it can be swapped for a cheaper cached clock under
+ * high load, or for a fixed clock when replaying or testing.
+ * @author Sebastian Rone, sebron-4
+ */
+@FunctionalInterface
+public interface BankClock {
+    /** Reads the system clock on every call. */
+    BankClock SYSTEM = System::currentTimeMillis;
+
+    /**
+     * Returns the current time.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    long millis();
+}
@@ -13,16 +13,32 @@ package sebron4;
  */
 
 import java.io.*;
-import java.text.NumberFormat;
-import java.time.format.DateTimeFormatter;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Locale;
 import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class BankLogic {
     private static int accountNumberCounter = 1000;
-    private List<Customer> customers = new ArrayList<>(); // List of all customers in the bank
+    // All customers in the bank, indexed by packed social security number (insertion order is kept for listings)
+    private final CustomerMap customers = new CustomerMap();
+    private final AccountMap accounts = new AccountMap(); // All open accounts in the bank, indexed by account number
+    private final CustomerNameIndex customerNames = new CustomerNameIndex(); // Customers sorted by name for searching
+    private final BalanceIndex balances = new BalanceIndex(); // Open accounts ordered by balance, per account product
+    private boolean validateSocialSecurityNumbers; // Whether new customers need a real birth date and check digit
 
     /**
      * Retrieves a list of all customers formatted as strings.
@@ -31,12 +47,92 @@ public class BankLogic {
      */
     public List<String> getAllCustomers() {
         List<String> strings = new ArrayList<>();
-        for (Customer customer : customers) {
+        for (Customer customer : customers.values()) {
             strings.add(Objects.toString(customer));
         }
         return strings;
     }
 
+    /**
+     * Retrieves one page of customers, formatted as strings, in the same order as
+     * {@link #getAllCustomers()}. Pass 0 as the cursor for the first page and then the
+     * cursor of the previous page. Customers created or deleted between pages do not make
+     * the listing skip or repeat anyone; new customers appear on later pages.
+     *
+     * @param cursor 0 for the first page, otherwise {@link CustomerPage#getNextCursor()} of the previous page.
+     * @param limit  The maximum number of customers on the page.
+     * @return The page of customers and the cursor for the next page.
+     */
+    public CustomerPage getCustomers(long cursor, int limit) {
+        if (cursor < 0 || limit < 0) {
+            throw new IllegalArgumentException("cursor and limit must not be negative");
+        }
+        List<Customer> page = new ArrayList<>(Math.min(limit, customers.size()));
+        long nextCursor = customers.page(cursor, limit, page);
+        List<String> strings = new ArrayList<>(page.size());
+        for (Customer customer : page) {
+            strings.add(Objects.toString(customer));
+        }
+        return new CustomerPage(strings, nextCursor, customers.hasAfter(nextCursor));
+    }
+
+    /**
+     * Passes every customer, in the same order as {@link #getAllCustomers()}, to the given action
+     * without building any intermediate list or strings. The bank must not be modified from the action.
+     *
+     * @param action The action to perform for each customer.
+     */
+    public void forEachCustomer(Consumer<? super CustomerView> action) {
+        for (Customer customer : customers) {
+            action.accept(customer);
+        }
+    }
+
+    /**
+     * Passes every open account to the given action, customer by customer in the same order as
+     * {@link #getAllCustomers()}. The bank must not be modified from the action.
+     *
+     * @param action The action to perform for each account.
+     */
+    public void forEachAccount(Consumer<? super AccountView> action) {
+        for (Customer customer : customers) {
+            for (Account account : customer.getAccounts()) {
+                action.accept(account);
+            }
+        }
+    }
+
+    /**
+     * Returns an iterator over all customers in the same order as {@link #getAllCustomers()}.
+     * The bank must not be modified while the iterator is in use.
+     *
+     * @return An iterator over read-only customer views.
+     */
+    public Iterator<CustomerView> customerIterator() {
+        return Collections.<CustomerView>unmodifiableCollection(customers.values()).iterator(); // Read-only and typed as views
+    }
+
+    /**
+     * Returns a lazy, sequential stream over all customers in the same order as {@link #getAllCustomers()}.
+     * The bank must not be modified while the stream is in use.
+     *
+     * @return A stream of read-only customer views.
+     */
+    public Stream<CustomerView> customers() {
+        return StreamSupport.stream(Spliterators.spliterator(customerIterator(), customers.size(),
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT), false);
+    }
+
+    /**
+     * Returns a lazy, sequential stream over all open accounts, customer by customer.
+     * The bank must not be modified while the stream is in use.
+     *
+     * @return A stream of read-only account views.
+     */
+    public Stream<AccountView> accounts() {
+        return customers().flatMap(customer -> customer.getAccounts().stream());
+    }
+
     /**
      * Creates a new customer and adds them to the bank's customer list.
      *
@@ -44,19 +140,60 @@ public class BankLogic {
      * @param surname The last name of the customer.
      * @param pNo    The social security number of the customer.
      * @return true if the customer was successfully created,
-     *         false if a customer with the same social security number already exists.
+     *         false if the social security number does not have the form of one, fails the
+     *         validation turned on with {@link #setValidateSocialSecurityNumbers(boolean)}, or a
+     *         customer with the same social security number already exists.
      */
     public boolean createCustomer(String name, String surname, String pNo) {
-        for (Customer customer : customers) {
-            if (Objects.equals(customer.getSocialSecurityNumber(), pNo)) {
-                return false; // Customer with the same social security number already exists
-            }
+        long ssnKey = SocialSecurityNumber.parse(pNo); // Parsed once, the customer keeps this key
+        if (ssnKey == SocialSecurityNumber.INVALID
+                || (validateSocialSecurityNumbers && !SocialSecurityNumber.isValid(ssnKey))) {
+            return false; // Not a social security number
+        }
+        if (findCustomer(ssnKey, SocialSecurityNumber.isWithoutCentury(pNo)) != null) {
+            return false; // Customer with the same social security number already exists
         }
-        Customer customer = new Customer(name, surname, pNo);
-        customers.add(customer);
+        Customer customer = new Customer(name, surname, ssnKey, SocialSecurityNumber.formOf(pNo)); // Shown as entered
+        customers.putIfAbsent(customer);
+        customerNames.add(customer);
         return true;
     }
 
+    /**
+     * Sets whether {@link #createCustomer(String, String, String)} also checks the birth date and
+     * check digit of the social security number. Off by default, when only the form is checked.
+     * Customers already in the bank are not affected.
+     *
+     * @param validate true to reject numbers that fail {@link SocialSecurityNumber#isValid(long)}.
+     */
+    public void setValidateSocialSecurityNumbers(boolean validate) {
+        validateSocialSecurityNumbers = validate;
+    }
+
+    /**
+     * Searches for customers whose name starts with the given prefix, ignoring case, one page
+     * at a time. The prefix is matched against both "surname name" and "name surname". Pass
+     * null as the cursor for the first page and then the cursor of the previous page; each
+     * page starts where the previous one ended, however many pages came before it.
+     *
+     * @param prefix The beginning of the name to search for.
+     * @param cursor null for the first page, otherwise {@link CustomerSearchPage#getNextCursor()} of the previous page.
+     * @param limit  The maximum number of customers on the page.
+     * @return The page of matching customers, sorted by name, and the cursor for the next page.
+     */
+    public CustomerSearchPage searchCustomers(String prefix, String cursor, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        List<Customer> page = new ArrayList<>(Math.min(limit, customers.size()));
+        String nextCursor = customerNames.search(prefix, cursor, limit, page);
+        List<String> strings = new ArrayList<>(page.size());
+        for (Customer customer : page) {
+            strings.add(Objects.toString(customer));
+        }
+        return new CustomerSearchPage(strings, nextCursor, customerNames.hasAfter(prefix, nextCursor));
+    }
+
     /**
      * Retrieves the details of a specific customer and their accounts.
      *
@@ -68,57 +205,94 @@ public class BankLogic {
         List<String> result = new ArrayList<>();
 
         // Find the customer with the given personal number
-        Customer customer = customers.stream()
-                .filter(c -> c.getSocialSecurityNumber().equals(pNo))
-                .findFirst()
-                .orElse(null);
+        Customer customer = findCustomer(pNo);
 
         // If the customer doesn't exist, return null
         if (customer == null) {
             return null;
         }
 
-        // Add customer info to the result list
-        result.add(String.format("%s %s %s",
-                customer.getSocialSecurityNumber(),
-                customer.getName(),
-                customer.getSirName()));
-
-        // Handle account details
-        NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(new Locale("sv", "SE"));
+        // Add customer info to the result list, only formatted again after the name has changed
+        result.add(customer.toString());
 
+        // Handle account details, only formatted again after the balance has changed
         for (Account account : customer.getAccounts()) {
-            String balanceStr = currencyFormat.format(account.getBalance());
-            String interestRateStr = formatInterestRate(account.getInterestRate());
-
-            // Add account details to the result list
-            result.add(String.format("%d %s %s %s",
-                    account.getAccountNumber(),
-                    balanceStr,
-                    account.getAccountType(),
-                    interestRateStr));
+            result.add(account.getFormattedAccountDetails());
         }
 
         return result; // Return the result list containing customer and account info
     }
 
     /**
-     * Formats the interest rate for display.
+     * Looks up a customer by social security number.
+     *
+     * @param pNo The social security number of the customer.
+     * @return The customer, or null if the number is invalid or no customer has it.
+     */
+    private Customer findCustomer(String pNo) {
+        long ssnKey = SocialSecurityNumber.parse(pNo);
+        if (ssnKey == SocialSecurityNumber.INVALID) {
+            return null; // Only the form matters for a lookup
+        }
+        return findCustomer(ssnKey, SocialSecurityNumber.isWithoutCentury(pNo));
+    }
+
+    /**
+     * Looks up a customer by the key of a social security number. A number written without the
+     * century resolves to the century before until its birth date has passed, so the same text
+     * may have given the customer the key a century earlier; both keys are tried for it.
+     *
+     * @param ssnKey The key of the social security number.
+     * @param withoutCentury Whether the number was written without the century.
+     * @return The customer, or null if no customer has the number.
+     */
+    private Customer findCustomer(long ssnKey, boolean withoutCentury) {
+        Customer customer = customers.get(ssnKey);
+        if (customer == null && withoutCentury) {
+            // Created while the birth date was still in the future, and given the century before
+            long earlier = SocialSecurityNumber.previousCentury(ssnKey);
+            customer = earlier != SocialSecurityNumber.INVALID ? customers.get(earlier) : null;
+        }
+        return customer;
+    }
+
+    /**
+     * Adds a new account to a customer and to the bank's account indexes.
+     *
+     * @param customer The customer that will hold the account.
+     * @param account The new account.
+     */
+    private void openAccount(Customer customer, Account account) {
+        customer.addAccount(account);
+        accounts.put(account);
+        balances.add(account);
+    }
+
+    /**
+     * Removes an account from its customer and from the bank's account indexes.
      *
-     * @param interestRate The interest rate to format.
-     * @return A string representation of the formatted interest rate.
+     * @param account The account to remove.
      */
-    private String formatInterestRate(double interestRate) {
-        // Check for specific values and format accordingly
-        if (interestRate == 5.0 || interestRate == -5.0) {
-            return (interestRate < 0 ? "-" : "") + "5 %"; // Convert 5.0 or -5.0 to 5 %
-        } else if (interestRate == 1.1 || interestRate == -1.1) {
-            return (interestRate < 0 ? "-" : "") + "1,1 %"; // Handle 1.1 % formatting
-        } else if (interestRate == 2.4 || interestRate == -2.4) {
-            return (interestRate < 0 ? "-" : "") + "2,4 %"; // Handle 2.4 % formatting
-        } else {
-            return String.format("%.1f %%", interestRate).replace(".", ","); // Default formatting with proper locale
+    private void dropAccount(Account account) {
+        account.getOwner().removeAccount(account);
+        accounts.remove(account.getAccountNumber());
+        balances.remove(account);
+        account.closeTransactionLog(); // Deletes its segment file, if any
+    }
+
+    /**
+     * Looks up an account and checks that it belongs to the customer with the given social security number.
+     *
+     * @param pNo The social security number of the customer.
+     * @param accountId The ID of the account.
+     * @return The account, or null if it does not exist or belongs to another customer.
+     */
+    private Account findOwnedAccount(String pNo, int accountId) {
+        Account account = accounts.get(accountId);
+        if (account == null || account.getOwner() != findCustomer(pNo)) {
+            return null; // Account not found or not owned by this customer
         }
+        return account;
     }
 
     /**
@@ -132,12 +306,13 @@ public class BankLogic {
      */
     public boolean changeCustomerName(String pNo, String name, String surname) {
         if (name != null && surname != null && !name.isEmpty() && !surname.isEmpty()) {
-            for (Customer customer : customers) {
-                if (customer.getSocialSecurityNumber().equals(pNo)) {
-                    customer.setName(name);
-                    customer.setSirName(surname);
-                    return true;
-                }
+            Customer customer = findCustomer(pNo);
+            if (customer != null) {
+                customerNames.remove(customer); // Unindex under the old name
+                customer.setName(name);
+                customer.setSirName(surname);
+                customerNames.add(customer);
+                return true;
             }
         }
         return false; // Customer not found or input is invalid
@@ -151,15 +326,7 @@ public class BankLogic {
      * @return The account number of the newly created account, or -1 if the customer was not found.
      */
     public int createSavingsAccount(String pNo) {
-        for (Customer customer : customers) {
-            if (customer.getSocialSecurityNumber().equals(pNo)) {
-                int newAccountNumber = ++accountNumberCounter;
-                Account account = new SavingsAccount(newAccountNumber);
-                customer.addAccount(account);
-                return account.getAccountNumber();
-            }
-        }
-        return -1; // Customer not found
+        return createAccount(pNo, AccountProducts.SAVINGS);
     }
 
     /**
@@ -169,13 +336,35 @@ public class BankLogic {
      * @return The account number of the newly created account, or -1 if the customer was not found.
      */
     public int createCreditAccount(String pNo) {
-        for (Customer customer : customers) {
-            if (customer.getSocialSecurityNumber().equals(pNo)) {
-                int newAccountNumber = ++accountNumberCounter;
-                Account account = new CreditAccount(newAccountNumber);
-                customer.addAccount(account);
-                return account.getAccountNumber();
-            }
+        return createAccount(pNo, AccountProducts.CREDIT);
+    }
+
+    /**
+     * Creates a new account of a registered product for a customer.
+     *
+     * @param pNo         The social security number of the customer.
+     * @param productName The name of the product, see {@link AccountProducts}.
+     * @return The account number of the newly created account, or -1 if the customer or product was not found.
+     */
+    public int createAccount(String pNo, String productName) {
+        AccountProduct product = AccountProducts.get(productName);
+        return product != null ? createAccount(pNo, product) : -1;
+    }
+
+    /**
+     * Creates a new account of the given product for a customer.
+     *
+     * @param pNo     The social security number of the customer.
+     * @param product The product of the new account.
+     * @return The account number of the newly created account, or -1 if the customer was not found.
+     */
+    public int createAccount(String pNo, AccountProduct product) {
+        Customer customer = findCustomer(pNo);
+        if (customer != null) {
+            int newAccountNumber = ++accountNumberCounter;
+            Account account = product.open(newAccountNumber);
+            openAccount(customer, account);
+            return account.getAccountNumber();
         }
         return -1; // Customer not found
     }
@@ -188,16 +377,21 @@ public class BankLogic {
      * @return The formatted account details, or null if the customer or account was not found.
      */
     public String getAccount(String pNo, int accountId) {
-        for (Customer customer : customers) {
-            if (customer.getSocialSecurityNumber().equals(pNo)) {
-                for (Account account : customer.getAccounts()) {
-                    if (account.getAccountNumber() == accountId) {
-                        return account.getFormattedAccountDetails();
-                    }
-                }
-            }
+        return findOwnedAccount(pNo, accountId) != null ? getAccount(accountId) : null;
+    }
+
+    /**
+     * Retrieves the details of an account by its account number alone.
+     *
+     * @param accountId The ID of the account.
+     * @return The formatted account details, or null if the account was not found.
+     */
+    public String getAccount(int accountId) {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            return null; // Account not found
         }
-        return null; // Customer or account not found
+        return account.getFormattedAccountDetails();
     }
 
     /**
@@ -210,27 +404,52 @@ public class BankLogic {
      *         false if the amount is invalid or the customer or account was not found.
      */
     public boolean deposit(String pNo, int accountId, int amount) {
+        return findOwnedAccount(pNo, accountId) != null && deposit(accountId, amount);
+    }
+
+    /**
+     * Deposits an exact amount in öre into a customer's account.
+     *
+     * @param pNo       The social security number of the customer.
+     * @param accountId The ID of the account.
+     * @param amountOre The amount to deposit in öre (must be greater than 0).
+     * @return true if the deposit was successful,
+     *         false if the amount is invalid or the customer or account was not found.
+     */
+    public boolean depositOre(String pNo, int accountId, long amountOre) {
+        return findOwnedAccount(pNo, accountId) != null && depositOre(accountId, amountOre);
+    }
+
+    /**
+     * Deposits a specified amount into an account identified by its account number alone.
+     *
+     * @param accountId The ID of the account.
+     * @param amount    The amount to deposit (must be greater than 0).
+     * @return true if the deposit was successful,
+     *         false if the amount is invalid or the account was not found.
+     */
+    public boolean deposit(int accountId, int amount) {
         if (amount <= 0) {
             return false; // Invalid deposit amount
         }
 
-        for (Customer customer : customers) {
-            if (customer.getSocialSecurityNumber().equals(pNo)) {
-                for (Account account : customer.getAccounts()) {
-                    if (account.getAccountNumber() == accountId) {
-                        // Update balance
-                        double newBalance = account.getBalance() + amount;
-                        account.setBalance(newBalance);
-
-                        // Record the transaction
-                        account.getTransactions().add(new Transaction("Deposit", amount, newBalance));
-
-                        return true; // Deposit successful
-                    }
-                }
-            }
+        return depositOre(accountId, Money.ofKronor((long) amount));
+    }
+
+    /**
+     * Deposits an exact amount in öre into an account identified by its account number alone.
+     *
+     * @param accountId The ID of the account.
+     * @param amountOre The amount to deposit in öre (must be greater than 0).
+     * @return true if the deposit was successful,
+     *         false if the amount is invalid or the account was not found.
+     */
+    public boolean depositOre(int accountId, long amountOre) {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            return false; // Account not found
         }
-        return false; // Customer or account not found
+        return account.deposit(amountOre); // Updates the balance and records the transaction
     }
 
     /**
@@ -241,62 +460,303 @@ public class BankLogic {
      * @return A list of formatted transaction details, or null if the customer or account was not found.
      */
     public List<String> getTransactions(String pNo, int accountId) {
-        // Find the customer by their social security number
-        for (Customer customer : customers) {
-            if (customer.getSocialSecurityNumber().equals(pNo)) {
-                // Find the account by its account number
-                for (Account account : customer.getAccounts()) {
-                    if (account.getAccountNumber() == accountId) {
-                        // Fetch the transactions for this account
-                        List<Transaction> transactions = account.getTransactions();
-
-                        // Return an empty list if there are no transactions
-                        if (transactions.isEmpty()) {
-                            return new ArrayList<>();
-                        }
-
-                        // Format the transaction details for return
-                        List<String> transactionDetails = new ArrayList<>();
-                        NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(new Locale("sv", "SE"));
-
-                        for (Transaction transaction : transactions) {
-                            String amountStr = currencyFormat.format(transaction.getAmount());
-                            String balanceStr = currencyFormat.format(transaction.getBalanceAfter());
-
-                            // Format: "2024-09-12 10:53:44 -500,00 kr Saldo: -500,00 kr"
-                            transactionDetails.add(String.format("%s %s Saldo: %s",
-                                    transaction.getDateTime().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")),
-                                    amountStr,
-                                    balanceStr));
-                        }
-
-                        return transactionDetails; // Return the formatted transaction details
-                    }
-                }
+        return findOwnedAccount(pNo, accountId) != null ? getTransactions(accountId) : null;
+    }
+
+    /**
+     * Retrieves the transaction history for an account identified by its account number alone.
+     *
+     * @param accountId The ID of the account.
+     * @return A list of formatted transaction details, or null if the account was not found.
+     */
+    public List<String> getTransactions(int accountId) {
+        // Find the account by its account number
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            return null; // Return null if the account is not found
+        }
+
+        synchronized (account) { // The log may be appended to, or replaced and closed, by other threads
+            // Fetch the transactions for this account
+            TransactionLog transactions = account.getTransactionLog();
+
+            // Return an empty list if there are no transactions
+            if (transactions.size() == 0) {
+                return new ArrayList<>();
             }
+
+            return formatTransactions(transactions, 0, transactions.size()); // Return the formatted transaction details
         }
+    }
 
-        return null; // Return null if the customer or account is not found
+    /**
+     * Retrieves the transactions of a customer's account that happened in a time range.
+     *
+     * @param pNo       The social security number of the customer.
+     * @param accountId The ID of the account.
+     * @param from      The earliest time to include, or null to start at the first transaction.
+     * @param to        The time to stop before, or null to continue to the last transaction.
+     * @param limit     The maximum number of transactions to return, counted from the start of the range.
+     * @return A list of formatted transaction details in time order, or null if the customer or account was not found.
+     */
+    public List<String> getTransactions(String pNo, int accountId, LocalDateTime from, LocalDateTime to, int limit) {
+        return findOwnedAccount(pNo, accountId) != null ? getTransactions(accountId, from, to, limit) : null;
+    }
+
+    /**
+     * Retrieves the transactions of an account, identified by its account number alone, that
+     * happened in a time range. Transactions are stored in time order, so the range is found by
+     * binary search and only the transactions in it are formatted.
+     *
+     * @param accountId The ID of the account.
+     * @param from      The earliest time to include, or null to start at the first transaction.
+     * @param to        The time to stop before, or null to continue to the last transaction.
+     * @param limit     The maximum number of transactions to return, counted from the start of the range.
+     * @return A list of formatted transaction details in time order, or null if the account was not found.
+     */
+    public List<String> getTransactions(int accountId, LocalDateTime from, LocalDateTime to, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            return null; // Return null if the account is not found
+        }
+
+        synchronized (account) { // The log may be appended to, or replaced and closed, by other threads
+            TransactionLog transactions = account.getTransactionLog();
+            int start = from == null ? 0 : account.indexOfFirstTransactionAtOrAfter(from);
+            int end = to == null ? transactions.size() : account.indexOfFirstTransactionAtOrAfter(to);
+            end = Math.min(end, start + Math.min(limit, transactions.size())); // Apply the limit without overflowing
+            if (start >= end) {
+                return new ArrayList<>();
+            }
+            return formatTransactions(transactions, start, end);
+        }
+    }
+
+    /**
+     * Formats a slice of an account's transactions for display, reading the log field by field
+     * and encoding each line into one reused buffer.
+     *
+     * @param transactions The account's transaction log.
+     * @param start        The index of the first transaction to format.
+     * @param end          The index to stop before.
+     * @return A list of formatted transaction details.
+     */
+    private List<String> formatTransactions(TransactionLog transactions, int start, int end) {
+        List<String> transactionDetails = new ArrayList<>(end - start);
+        StringBuilder line = new StringBuilder(64); // Reused for every line, only the finished line is allocated
+        DateTimeEncoder dates = new DateTimeEncoder();
+
+        for (int i = start; i < end; i++) {
+            // Format: "2024-09-12 10:53:44 -500,00 kr Saldo: -500,00 kr"
+            line.setLength(0);
+            dates.append(line, transactions.timestampAt(i)).append(' ');
+            SekEncoder.appendAmount(line, transactions.amountAt(i)).append(" Saldo: ");
+            SekEncoder.appendAmount(line, transactions.balanceAfterAt(i));
+            transactionDetails.add(line.toString());
+        }
+
+        return transactionDetails;
+    }
+
+    /**
+     * Writes a statement for a customer's account: a header, the account details and the
+     * transactions in a time range with the opening and closing balance. The transactions are
+     * streamed to the writer through a fixed-size buffer, so the statement is never held in
+     * memory as a whole.
+     *
+     * @param pNo       The social security number of the customer.
+     * @param accountId The ID of the account.
+     * @param from      The earliest time to include, or null to start at the first transaction.
+     * @param to        The time to stop before, or null to continue to the last transaction.
+     * @param out       The writer to write the statement to; it is flushed but not closed.
+     * @return true if the statement was written, false if the customer or account was not found.
+     * @throws IOException If writing fails.
+     * @throws ConcurrentModificationException If the history of the account is compacted while the statement is written.
+     * @throws IllegalArgumentException If the range starts between two transactions of a compacted day.
+     */
+    public boolean writeStatement(String pNo, int accountId, LocalDateTime from, LocalDateTime to, Writer out) throws IOException {
+        return findOwnedAccount(pNo, accountId) != null && writeStatement(accountId, from, to, out);
+    }
+
+    /**
+     * Writes a statement for an account identified by its account number alone.
+     *
+     * @param accountId The ID of the account.
+     * @param from      The earliest time to include, or null to start at the first transaction.
+     * @param to        The time to stop before, or null to continue to the last transaction.
+     * @param out       The writer to write the statement to; it is flushed but not closed.
+     * @return true if the statement was written, false if the account was not found.
+     * @throws IOException If writing fails.
+     * @throws ConcurrentModificationException If the history of the account is compacted while the statement is written.
+     * @throws IllegalArgumentException If the range starts between two transactions of a compacted day.
+     */
+    public boolean writeStatement(int accountId, LocalDateTime from, LocalDateTime to, Writer out) throws IOException {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            return false; // Return false if the account is not found
+        }
+        new StatementWriter().write(account, from, to, out);
+        return true;
+    }
+
+    /**
+     * Writes a statement for an account to a channel, encoded as UTF-8.
+     *
+     * @param accountId The ID of the account.
+     * @param from      The earliest time to include, or null to start at the first transaction.
+     * @param to        The time to stop before, or null to continue to the last transaction.
+     * @param out       The channel to write the statement to; it is not closed.
+     * @return true if the statement was written, false if the account was not found.
+     * @throws IOException If writing fails.
+     * @throws ConcurrentModificationException If the history of the account is compacted while the statement is written.
+     * @throws IllegalArgumentException If the range starts between two transactions of a compacted day.
+     */
+    public boolean writeStatement(int accountId, LocalDateTime from, LocalDateTime to, WritableByteChannel out) throws IOException {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            return false; // Return false if the account is not found
+        }
+        new StatementWriter().write(account, from, to, out);
+        return true;
+    }
+
+    /**
+     * Prepares the month-end statements of every open account, one file per account in a
+     * directory named after the month, for example "2024-09/account-1001.txt". The accounts are
+     * taken now; call {@link StatementBatch#run} to write the statements, on any thread. Running
+     * a batch for the same month again only writes the statements that are still missing.
+     *
+     * @param month     The month the statements cover.
+     * @param directory The directory the month's directory is created in.
+     * @param threads   The number of worker threads.
+     * @return The batch of statements.
+     */
+    public StatementBatch createMonthEndStatements(YearMonth month, Path directory, int threads) {
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+        return new StatementBatch(accounts.values(), directory.resolve(month.toString()), from, to, threads);
+    }
+
+    /**
+     * Retrieves the balance a customer's account had at a given time.
+     *
+     * @param pNo       The social security number of the customer.
+     * @param accountId The ID of the account.
+     * @param time      The time to read the balance at.
+     * @return The formatted balance, or null if the customer or account was not found.
+     * @throws IllegalArgumentException If the time falls between the first and the last
+     *         transaction of a compacted day, where the balance is no longer known.
+     */
+    public String getBalanceAsOf(String pNo, int accountId, LocalDateTime time) {
+        return findOwnedAccount(pNo, accountId) != null ? getBalanceAsOf(accountId, time) : null;
+    }
+
+    /**
+     * Retrieves the balance an account, identified by its account number alone, had at a given
+     * time. Compacted history is answered from daily checkpoints, so nothing is replayed, see
+     * {@link Account#getBalanceOreAsOf(LocalDateTime)}.
+     *
+     * @param accountId The ID of the account.
+     * @param time      The time to read the balance at.
+     * @return The formatted balance, or null if the account was not found.
+     * @throws IllegalArgumentException If the time falls between the first and the last
+     *         transaction of a compacted day, where the balance is no longer known.
+     */
+    public String getBalanceAsOf(int accountId, LocalDateTime time) {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            return null; // Return null if the account is not found
+        }
+        return SekFormat.format(account.getBalanceOreAsOf(time));
+    }
+
+    /**
+     * Retrieves the daily summaries that the compacted history of an account was replaced by.
+     *
+     * @param accountId The ID of the account.
+     * @return A list of formatted summaries, oldest first, or null if the account was not found.
+     */
+    public List<String> getTransactionSummaries(int accountId) {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            return null; // Return null if the account is not found
+        }
+        List<String> summaries = new ArrayList<>();
+        for (BalanceCheckpoint checkpoint : account.getBalanceCheckpoints()) {
+            summaries.add(checkpoint.toString());
+        }
+        return summaries;
+    }
+
+    /**
+     * Compacts the transactions of every account made before the given day into daily balance
+     * checkpoints, which bounds the memory held by accounts that have existed for years.
+     *
+     * @param before The first day whose transactions are kept in detail.
+     * @return The number of transactions compacted.
+     */
+    public int compactTransactions(LocalDate before) {
+        int compacted = 0;
+        for (Account account : accounts.values()) {
+            compacted += account.compactHistory(before);
+        }
+        return compacted;
     }
 
     /**
      * Withdraws a specified amount from a customer's account.
      * @param pNo The social security number of the customer
      * @param accountId The ID of the account
-     * @param amount The amount to withdraw (must be greater than 0)
+     * @param amount The amount to withdraw in kronor, rounded to whole öre (must be greater than 0)
      * @return true if the withdrawal was successful, false if the amount is invalid, insufficient balance, or the customer or account was not found
      */
     public boolean withdraw(String pNo, int accountId, double amount) {
-        for (Customer customer : customers) {
-            if (customer.getSocialSecurityNumber().equals(pNo)) {
-                for (Account account : customer.getAccounts()) {
-                    if (account.getAccountNumber() == accountId) {
-                        return account.withdraw(amount);
-                    }
-                }
-            }
+        return findOwnedAccount(pNo, accountId) != null && withdraw(accountId, amount);
+    }
+
+    /**
+     * Withdraws a specified amount from an account identified by its account number alone.
+     * Kept for callers that work in kronor, see {@link #withdrawOre(int, long)}.
+     * @param accountId The ID of the account
+     * @param amount The amount to withdraw in kronor, rounded to whole öre (must be greater than 0)
+     * @return true if the withdrawal was successful, false if the amount is invalid, insufficient balance, or the account was not found
+     */
+    public boolean withdraw(int accountId, double amount) {
+        long amountOre;
+        try {
+            amountOre = Money.ofKronor(amount);
+        } catch (ArithmeticException e) {
+            return false; // Not a finite amount that can be held in öre
         }
-        return false; // Customer or account not found
+        return withdrawOre(accountId, amountOre);
+    }
+
+    /**
+     * Withdraws an exact amount in öre from a customer's account.
+     * @param pNo The social security number of the customer
+     * @param accountId The ID of the account
+     * @param amountOre The amount to withdraw in öre (must be greater than 0)
+     * @return true if the withdrawal was successful, false if the amount is invalid, insufficient balance, or the customer or account was not found
+     */
+    public boolean withdrawOre(String pNo, int accountId, long amountOre) {
+        return findOwnedAccount(pNo, accountId) != null && withdrawOre(accountId, amountOre);
+    }
+
+    /**
+     * Withdraws an exact amount in öre from an account identified by its account number alone.
+     * @param accountId The ID of the account
+     * @param amountOre The amount to withdraw in öre (must be greater than 0)
+     * @return true if the withdrawal was successful, false if the amount is invalid, insufficient balance, or the account was not found
+     */
+    public boolean withdrawOre(int accountId, long amountOre) {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            return false; // Account not found
+        }
+        return account.withdrawOre(amountOre);
     }
 
 
@@ -307,36 +767,30 @@ public class BankLogic {
      * @return A formatted string with account details and interest amount, or null if the customer or account was not found
      */
     public String closeAccount(String pNo, int accountId) {
-        for (Customer customer : customers) {
-            if (customer.getSocialSecurityNumber().equals(pNo)) {
-                for (Account account : customer.getAccounts()) {
-                    if (account.getAccountNumber() == accountId) {
-                        double interestAmount;
-                        if (account instanceof SavingsAccount) {
-                            interestAmount = account.getBalance() * 0.024; // 2.4% interest for savings
-                        } else if (account instanceof CreditAccount) {
-                            if (account.getBalance() < 0) {
-                                interestAmount = account.getBalance() * 0.05; // 5% interest for debt
-                            } else {
-                                interestAmount = account.getBalance() * 0.011; // 1.1% interest for positive balance
-                            }
-                        } else {
-                            interestAmount = 0;
-                        }
-
-                        customer.getAccounts().remove(account);
-
-                        NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(new Locale("sv", "SE"));
-                        String balanceStr = currencyFormat.format(account.getBalance());
-                        String interestStr = currencyFormat.format(interestAmount);
-
-                        return String.format("%d %s %s %s",
-                                accountId, balanceStr, account.getAccountType(), interestStr);
-                    }
-                }
-            }
+        return findOwnedAccount(pNo, accountId) != null ? closeAccount(accountId) : null;
+    }
+
+    /**
+     * Closes an account identified by its account number alone and calculates the final interest amount.
+     * @param accountId The ID of the account to close
+     * @return A formatted string with account details and interest amount, or null if the account was not found
+     */
+    public String closeAccount(int accountId) {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            return null; // Account not found
         }
-        return null;
+
+        long balance = account.getBalanceOre();
+        long interestAmount = account.getProduct().interest(balance); // Interest from the product's rate table
+
+        dropAccount(account);
+
+        String balanceStr = SekFormat.format(balance);
+        String interestStr = SekFormat.format(interestAmount);
+
+        return String.format("%d %s %s %s",
+                accountId, balanceStr, account.getAccountType(), interestStr);
     }
 
     /**
@@ -351,10 +805,7 @@ public class BankLogic {
         List<String> result = new ArrayList<>(); // Initialize a list to hold the result
 
         // Find the customer with the given personal number (social security number)
-        Customer customerToDelete = customers.stream()
-                .filter(customer -> customer.getSocialSecurityNumber().equals(pNo)) // Filter customers by SSN
-                .findFirst() // Get the first matching customer
-                .orElse(null); // Return null if no customer is found
+        Customer customerToDelete = findCustomer(pNo);
 
         // If the customer doesn't exist, return null
         if (customerToDelete == null) {
@@ -367,27 +818,14 @@ public class BankLogic {
                 customerToDelete.getName(), // Add customer's first name
                 customerToDelete.getSirName())); // Add customer's last name
 
-        // Format currency for account balances and interest
-        NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(new Locale("sv", "SE")); // Swedish locale for currency formatting
-
         // Iterate over a copy of the customer's accounts to avoid concurrent modification issues
         for (Account account : new ArrayList<>(customerToDelete.getAccounts())) {
-            double interestAmount = 0.0; // Initialize interest amount
-
-            // Check the account type and calculate interest accordingly
-            if (account instanceof SavingsAccount) {
-                SavingsAccount savingsAccount = (SavingsAccount) account; // Cast to SavingsAccount
-                double interestRate = savingsAccount.getInterestRate(); // Get interest rate
-                interestAmount = savingsAccount.getBalance() * (interestRate / 100.0); // Calculate interest
-            } else if (account instanceof CreditAccount) {
-                CreditAccount creditAccount = (CreditAccount) account; // Cast to CreditAccount
-                double interestRate = creditAccount.getInterestRate(); // Get interest rate
-                interestAmount = creditAccount.getBalance() * (interestRate / 100.0); // Calculate interest
-            }
+            long balance = account.getBalanceOre(); // Balance in öre
+            long interestAmount = account.getProduct().interest(balance); // Interest from the product's rate table, in öre
 
             // Format the account balance and interest amount
-            String balanceStr = currencyFormat.format(account.getBalance()); // Format balance
-            String interestStr = currencyFormat.format(interestAmount); // Format interest
+            String balanceStr = SekFormat.format(balance); // Format balance
+            String interestStr = SekFormat.format(interestAmount); // Format interest
 
             // Add account details to the result list
             result.add(String.format("%d %s %s %s",
@@ -396,15 +834,89 @@ public class BankLogic {
                     account.getAccountType(), // Add account type
                     interestStr)); // Add formatted interest amount
 
-            // Remove the account from the customer
-            customerToDelete.removeAccount(account); // Update the customer's accounts
+            // Remove the account from the customer and the account indexes
+            dropAccount(account);
         }
         // Finally, remove the customer from the list of customers
-        customers.remove(customerToDelete); // Remove customer from bank's customer list
+        customers.remove(customerToDelete.getSsnKey()); // Remove customer from bank's customer index
+        customerNames.remove(customerToDelete);
 
         return result; // Return the result list containing customer and account info
     }
 
+    /**
+     * Finds accounts of the given product whose balance lies in a range. The account numbers are
+     * produced lazily in ascending balance order.
+     *
+     * @param product  The account product, for example {@link AccountProducts#CREDIT}.
+     * @param fromOre  The lowest balance to include, in öre.
+     * @param toOre    The balance to stop before, in öre.
+     * @return An iterator over the matching account numbers.
+     */
+    public PrimitiveIterator.OfInt getAccountsWithBalanceBetweenOre(AccountProduct product, long fromOre, long toOre) {
+        return balances.range(product, fromOre, toOre);
+    }
+
+    /**
+     * Finds accounts of the given product whose balance is strictly below a limit,
+     * for example credit accounts close to the credit limit.
+     *
+     * @param product  The account product.
+     * @param limitOre The balance limit, in öre.
+     * @return An iterator over the matching account numbers, in ascending balance order.
+     */
+    public PrimitiveIterator.OfInt getAccountsWithBalanceBelowOre(AccountProduct product, long limitOre) {
+        return balances.below(product, limitOre);
+    }
+
+    /**
+     * Finds accounts of the given product whose balance is strictly above a limit.
+     *
+     * @param product  The account product.
+     * @param limitOre The balance limit, in öre.
+     * @return An iterator over the matching account numbers, in ascending balance order.
+     */
+    public PrimitiveIterator.OfInt getAccountsWithBalanceAboveOre(AccountProduct product, long limitOre) {
+        return balances.above(product, limitOre);
+    }
+
+    /**
+     * Finds accounts of the given product whose balance lies in a range given in kronor,
+     * see {@link #getAccountsWithBalanceBetweenOre(AccountProduct, long, long)}.
+     *
+     * @param product The account product.
+     * @param from    The lowest balance to include, in kronor.
+     * @param to      The balance to stop before, in kronor.
+     * @return An iterator over the matching account numbers, in ascending balance order.
+     */
+    public PrimitiveIterator.OfInt getAccountsWithBalanceBetween(AccountProduct product, double from, double to) {
+        return getAccountsWithBalanceBetweenOre(product, Money.ofKronor(from), Money.ofKronor(to));
+    }
+
+    /**
+     * Finds accounts of the given product whose balance is strictly below a limit given in
+     * kronor, see {@link #getAccountsWithBalanceBelowOre(AccountProduct, long)}.
+     *
+     * @param product The account product.
+     * @param limit   The balance limit, in kronor.
+     * @return An iterator over the matching account numbers, in ascending balance order.
+     */
+    public PrimitiveIterator.OfInt getAccountsWithBalanceBelow(AccountProduct product, double limit) {
+        return getAccountsWithBalanceBelowOre(product, Money.ofKronor(limit));
+    }
+
+    /**
+     * Finds accounts of the given product whose balance is strictly above a limit given in
+     * kronor, see {@link #getAccountsWithBalanceAboveOre(AccountProduct, long)}.
+     *
+     * @param product The account product.
+     * @param limit   The balance limit, in kronor.
+     * @return An iterator over the matching account numbers, in ascending balance order.
+     */
+    public PrimitiveIterator.OfInt getAccountsWithBalanceAbove(AccountProduct product, double limit) {
+        return getAccountsWithBalanceAboveOre(product, Money.ofKronor(limit));
+    }
+
     /**
      * Saves all customers and their associated accounts to a file.
      * This method serializes the list of customers and writes it to the specified file.
@@ -414,7 +926,7 @@ public class BankLogic {
      */
     public void saveCustomersToFile(String filePath) throws IOException {
         try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filePath))) {
-            oos.writeObject(customers); // Serialize customer list
+            oos.writeObject(new ArrayList<>(customers.values())); // Serialize customer list
         }
     }
 
@@ -424,13 +936,82 @@ public class BankLogic {
      * It also ensures account numbers are synchronized after loading.
      *
      * @param filePath The relative path of the file to read from.
+     * If the load fails, the bank is left unchanged and the transaction logs of every account
+     * read so far are closed.
+     *
+     * @param filePath The relative path of the file to read from.
      * @throws IOException If an I/O error occurs during the reading process.
+     * @throws InvalidObjectException If the file holds more than one customer with the same social
+     *         security number.
      * @throws ClassNotFoundException If the class of a serialized object cannot be found.
      */
     public void loadCustomersFromFile(String filePath) throws IOException, ClassNotFoundException {
+        List<Account> read = new ArrayList<>(); // Every account read, including from a stream that fails partway
+        boolean installed = false;
+        Account.collectReadAccounts(read);
         try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filePath))) {
-            customers = (List<Customer>) ois.readObject(); // Deserialize customer list
+            List<Customer> loaded = (List<Customer>) ois.readObject(); // Deserialize customer list
+            rebuildCustomerIndex(loaded); // Index the loaded customers by social security number
+            installed = true;
             updateAccountNumbers(); // Ensure account numbers are synchronized
+        } finally {
+            Account.collectReadAccounts(null);
+            if (!installed) {
+                for (Account account : read) {
+                    account.closeTransactionLog(); // Release what their logs hold outside the heap
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the customer, account and name indexes with the given customers, keeping their order.
+     *
+     * @param loaded The customers to index.
+     * @throws InvalidObjectException If two of the customers have the same social security number,
+     *         for example written once with and once without the century; nothing is replaced.
+     */
+    private void rebuildCustomerIndex(List<Customer> loaded) throws InvalidObjectException {
+        checkNoDuplicateCustomers(loaded);
+        List<Account> replaced = new ArrayList<>(accounts.values()); // Accounts held before loading
+        for (Account account : replaced) {
+            account.setBalanceIndex(null); // Callers may still hold them, so stop them reporting to the rebuilt index
+        }
+        customers.clear();
+        accounts.clear();
+        customerNames.clear();
+        balances.clear();
+        for (Customer customer : loaded) {
+            customers.putIfAbsent(customer);
+            customerNames.add(customer);
+            for (Account account : customer.getAccounts()) {
+                account.setOwner(customer); // Owners are not serialized
+                accounts.put(account);
+                balances.add(account);
+            }
+        }
+        for (Account account : replaced) {
+            account.closeTransactionLog(); // Release their segment files, if any
+        }
+    }
+
+    /**
+     * Checks that no two loaded customers have the same social security number. If any do, the
+     * load fails, naming every number that is held twice.
+     *
+     * @param loaded The customers read from the file.
+     * @throws InvalidObjectException If two of the customers have the same social security number.
+     */
+    private void checkNoDuplicateCustomers(List<Customer> loaded) throws InvalidObjectException {
+        CustomerMap seen = new CustomerMap();
+        List<String> duplicates = new ArrayList<>();
+        for (Customer customer : loaded) {
+            if (!seen.putIfAbsent(customer)) {
+                duplicates.add(customer.toString());
+            }
+        }
+        if (!duplicates.isEmpty()) {
+            throw new InvalidObjectException("Customers with the same social security number: " + String.join(", ", duplicates));
         }
     }
 
@@ -440,7 +1021,7 @@ public class BankLogic {
      * and sets the counter to one higher than the maximum.
      */
     private void updateAccountNumbers() {
-        int maxAccountNumber = customers.stream()
+        int maxAccountNumber = customers.values().stream()
                 .flatMap(customer -> customer.getAccounts().stream())
                 .mapToInt(Account::getAccountNumber)
                 .max()
@@ -0,0 +1,49 @@
+package sebron4;
+
+/**
+ * A clock that reads the system clock on a background thread at a fixed interval and hands
+ * out the cached value, so taking a timestamp is a single volatile read. Timestamps are at
+ * most one interval behind the system clock and never go backwards.
+ * @author Sebastian Rone, sebron-4
+ */
+public class CachedClock implements BankClock, AutoCloseable {
+    private final Thread refresher; // Daemon thread that updates the cached time
+    private volatile long now; // Cached time in milliseconds since the epoch
+
+    /**
+     * Constructs a clock and starts refreshing it.
+     *
+     * @param refreshMillis the interval between reads of the system clock, in milliseconds
+     */
+    public CachedClock(long refreshMillis) {
+        if (refreshMillis <= 0) {
+            throw new IllegalArgumentException("refreshMillis must be positive");
+        }
+        now = System.currentTimeMillis();
+        refresher = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(refreshMillis);
+                    now = Math.max(now, System.currentTimeMillis()); // Never step back if the system clock does
+                }
+            } catch (InterruptedException e) {
+                // Closed, stop refreshing
+            }
+        }, "cached-clock");
+        refresher.setDaemon(true);
+        refresher.start();
+    }
+
+    @Override
+    public long millis() {
+        return now;
+    }
+
+    /**
+     * Stops refreshing the clock. The clock keeps returning the last time read.
+     */
+    @Override
+    public void close() {
+        refresher.interrupt();
+    }
+}
@@ -0,0 +1,83 @@
+package sebron4;
+
+import java.util.Arrays;
+
+/**
+ * A transaction log that keeps each field of the history in its own growable primitive
+ * array: timestamp, amount, balance after and a one-byte type code. An entry costs 25 bytes
+ * of array space and no objects, so a long history adds almost nothing for the garbage
+ * collector to trace. Transaction objects are only created when {@link #get(int)} is called.
+ * @author Sebastian Rone, sebron-4
+ */
+public class ColumnarTransactionLog implements TransactionLog {
+    private static final int INITIAL_CAPACITY = 8; // Capacity allocated on the first append
+    private static final long[] EMPTY_LONGS = {}; // Shared by logs that have no entries yet
+    private static final byte[] EMPTY_BYTES = {};
+
+    private long[] timestamps = EMPTY_LONGS; // Milliseconds since the epoch
+    private long[] amounts = EMPTY_LONGS; // Amounts in öre
+    private long[] balancesAfter = EMPTY_LONGS; // Balances after each transaction in öre
+    private byte[] types = EMPTY_BYTES; // TransactionType codes
+    private int size; // Number of entries in use
+
+    @Override
+    public void append(long epochMillis, TransactionType type, long amountOre, long balanceAfterOre) {
+        if (size == timestamps.length) {
+            grow();
+        }
+        timestamps[size] = epochMillis;
+        amounts[size] = amountOre;
+        balancesAfter[size] = balanceAfterOre;
+        types[size] = type.code();
+        size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long timestampAt(int index) {
+        return timestamps[checkIndex(index)];
+    }
+
+    @Override
+    public TransactionType typeAt(int index) {
+        return TransactionType.ofCode(types[checkIndex(index)]);
+    }
+
+    @Override
+    public long amountAt(int index) {
+        return amounts[checkIndex(index)];
+    }
+
+    @Override
+    public long balanceAfterAt(int index) {
+        return balancesAfter[checkIndex(index)];
+    }
+
+    /**
+     * Grows all columns by half (at least to the initial capacity).
+     */
+    private void grow() {
+        int capacity = Math.max(INITIAL_CAPACITY, timestamps.length + (timestamps.length >>> 1));
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        balancesAfter = Arrays.copyOf(balancesAfter, capacity);
+        types = Arrays.copyOf(types, capacity);
+    }
+
+    /**
+     * Checks that an index refers to an entry in use.
+     *
+     * @param index the index
+     * @return the index
+     */
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return index;
+    }
+}
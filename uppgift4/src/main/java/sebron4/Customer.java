@@ -6,30 +6,67 @@ package sebron4;
  * @author Sebastian Rone, sebron-4
  */
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serial;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
-public class Customer implements Serializable {
+public class Customer implements CustomerView, Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    // The serialized form is kept as it was when accounts were stored in a List, so existing files still load
+    @Serial
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("accounts", List.class),
+            new ObjectStreamField("name", String.class),
+            new ObjectStreamField("sirName", String.class),
+            new ObjectStreamField("socialSecurityNumber", String.class), // Written in the 12-digit form, the key is computed from it when read
+            new ObjectStreamField("ssnForm", SocialSecurityNumber.Form.class) // How the number was entered, missing from older files
+    };
+
     private String name; // First name of the customer
     private String sirName; // Last name (surname) of the customer
-    private final String socialSecurityNumber; // Unique social security number of the customer
-    private List<Account> accounts = new ArrayList<>(); // List of accounts associated with the customer
+    private transient long ssnKey; // Canonical key of the social security number, see SocialSecurityNumber
+    private transient SocialSecurityNumber.Form ssnForm; // How the number was entered, which is how it is shown
+    private transient AccountMap accounts = new AccountMap(); // Accounts associated with the customer, keyed by account number
+    private transient long version; // Number of changes to the name, which is all the formatted customer depends on
+    private transient String formatted; // Formatted customer, or null if not formatted yet
+    private transient long formattedVersion; // Version the formatted customer was created at
+
+    /**
+     * Constructs a new Customer with the given details, showing the social security number in
+     * the 12-digit form "YYYYMMDD-NNNC".
+     * @param name The first name of the customer
+     * @param sirName The last name of the customer
+     * @param ssnKey The unique social security number of the customer, as parsed by {@link SocialSecurityNumber}
+     * @throws IllegalArgumentException If the key is {@link SocialSecurityNumber#INVALID}
+     */
+    public Customer(String name, String sirName, long ssnKey) {
+        this(name, sirName, ssnKey, SocialSecurityNumber.Form.TWELVE_DIGITS_DASH);
+    }
 
     /**
      * Constructs a new Customer with the given details.
      * @param name The first name of the customer
      * @param sirName The last name of the customer
-     * @param socialSecurityNumber The unique social security number of the customer
+     * @param ssnKey The unique social security number of the customer, as parsed by {@link SocialSecurityNumber}
+     * @param ssnForm How the social security number was entered, which is how it is shown
+     * @throws IllegalArgumentException If the key is {@link SocialSecurityNumber#INVALID} or the form is null
      */
-    public Customer(String name, String sirName, String socialSecurityNumber) {
-        this.name = name;
-        this.sirName = sirName;
-        this.socialSecurityNumber = socialSecurityNumber;
+    public Customer(String name, String sirName, long ssnKey, SocialSecurityNumber.Form ssnForm) {
+        if (ssnKey == SocialSecurityNumber.INVALID || ssnForm == null) {
+            throw new IllegalArgumentException("Invalid social security number");
+        }
+        this.name = NamePool.shared().intern(name); // Share the instance with customers of the same name
+        this.sirName = NamePool.shared().intern(sirName);
+        this.ssnKey = ssnKey;
+        this.ssnForm = ssnForm;
     }
 
     /**
@@ -44,8 +81,9 @@ public class Customer implements Serializable {
      * Sets the last name (surname) of the customer.
      * @param sirName The new last name to set
      */
-    public void setSirName(String sirName) {
-        this.sirName = sirName;
+    public synchronized void setSirName(String sirName) {
+        this.sirName = NamePool.shared().intern(sirName);
+        version++; // Makes the formatted customer out of date
     }
 
     /**
@@ -60,48 +98,143 @@ public class Customer implements Serializable {
      * Sets the first name of the customer.
      * @param name The new first name to set
      */
-    public void setName(String name) {
-        this.name = name;
+    public synchronized void setName(String name) {
+        this.name = NamePool.shared().intern(name);
+        version++; // Makes the formatted customer out of date
     }
 
     /**
-     * Gets the unique social security number of the customer.
-     * @return The social security number of the customer
+     * Gets the version of the customer, which goes up every time the name is changed.
+     * The accounts have versions of their own, see {@link Account#getVersion()}.
+     * @return The version of the customer
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the unique social security number of the customer, written the way it was entered.
+     * @return The social security number of the customer, for example "8505221898"
      */
     public String getSocialSecurityNumber() {
-        return socialSecurityNumber;
+        return SocialSecurityNumber.format(ssnKey, ssnForm);
+    }
+
+    /**
+     * Gets the unique social security number of the customer as a canonical key, the same
+     * whichever form the number was entered in.
+     * @return The key of the social security number, used as the key in BankLogic's indexes
+     */
+    public long getSsnKey() {
+        return ssnKey;
     }
 
     /**
-     * Gets the list of accounts associated with the customer.
-     * @return The list of accounts
+     * Gets the accounts associated with the customer, in the order they were added.
+     * @return A read-only list of the accounts
      */
     public List<Account> getAccounts() {
-        return accounts;
+        return accounts.values();
+    }
+
+    /**
+     * Gets one of the customer's accounts by its account number.
+     * @param accountNumber The account number to look up
+     * @return The account, or null if the customer holds no account with that number
+     */
+    public Account getAccount(int accountNumber) {
+        return accounts.get(accountNumber);
     }
 
     /**
-     * Sets the list of accounts associated with the customer.
+     * Replaces the accounts associated with the customer.
      * @param accounts The new list of accounts to set
      */
     public void setAccounts(List<Account> accounts) {
-        this.accounts = accounts;
+        this.accounts.clear();
+        for (Account account : accounts) {
+            addAccount(account);
+        }
     }
 
     /**
-     * Adds an account to the customer's list of accounts.
+     * Adds an account to the customer's accounts.
      * @param account The account to add
      */
     public void addAccount(Account account) {
-        accounts.add(account);
+        accounts.put(account);
+        account.setOwner(this);
     }
 
+    /**
+     * Removes an account from the customer's accounts.
+     * @param account The account to remove
+     */
     public void removeAccount(Account account) {
-        accounts.remove(account);
+        if (accounts.get(account.getAccountNumber()) == account) {
+            accounts.remove(account.getAccountNumber());
+            account.setOwner(null);
+        }
     }
 
+    /**
+     * Writes the customer with its accounts as a list, matching the serialized form.
+     * @param out The stream to write to
+     * @throws IOException If an I/O error occurs
+     */
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("accounts", new ArrayList<>(accounts.values()));
+        fields.put("name", name);
+        fields.put("sirName", sirName);
+        fields.put("socialSecurityNumber", SocialSecurityNumber.format(ssnKey)); // The century is kept in the file
+        fields.put("ssnForm", ssnForm);
+        out.writeFields();
+    }
+
+    /**
+     * Reads the customer and rebuilds the account map from the serialized list.
+     * @param in The stream to read from
+     * @throws IOException If an I/O error occurs
+     * @throws ClassNotFoundException If the class of a serialized object cannot be found
+     */
+    @Serial
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        name = NamePool.shared().intern((String) fields.get("name", null)); // Each name read is a new instance
+        sirName = NamePool.shared().intern((String) fields.get("sirName", null));
+        String socialSecurityNumber = (String) fields.get("socialSecurityNumber", null);
+        ssnKey = SocialSecurityNumber.parse(socialSecurityNumber);
+        ssnForm = (SocialSecurityNumber.Form) fields.get("ssnForm", null);
+        if (ssnForm == null) {
+            ssnForm = SocialSecurityNumber.formOf(socialSecurityNumber); // Older files hold the number as entered
+        }
+        if (ssnKey == SocialSecurityNumber.INVALID || ssnForm == null) {
+            // Only the form is checked, files saved before check digits were validated may hold others
+            throw new InvalidObjectException("Invalid social security number");
+        }
+        accounts = new AccountMap();
+        List<Account> list = (List<Account>) fields.get("accounts", null);
+        if (list != null) {
+            for (Account account : list) {
+                addAccount(account);
+            }
+        }
+    }
+
+    /**
+     * Returns the social security number and name of the customer. The string is kept and
+     * returned again until the name is changed.
+     * @return The formatted customer
+     */
     @Override
-    public String toString() {
-        return String.format("%s %s %s", socialSecurityNumber, name, sirName);
+    public synchronized String toString() {
+        if (formatted == null || formattedVersion != version) {
+            formatted = String.format("%s %s %s", getSocialSecurityNumber(), name, sirName);
+            formattedVersion = version;
+        }
+        return formatted;
     }
 }
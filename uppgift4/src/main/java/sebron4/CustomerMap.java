@@ -0,0 +1,188 @@
+package sebron4;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A map from packed social security number (see {@link SocialSecurityNumber}) to customer,
+ * keyed directly on the primitive long so that lookups never box the key. Customers are
+ * kept in insertion order in dense arrays, with an open-addressing hash table pointing into
+ * them, see {@link DenseHashTable}.
+ *
+ * Every customer added gets a sequence number from an increasing counter. Because the
+ * dense arrays are in insertion order, the sequence numbers are sorted even with holes,
+ * which lets {@link #page(long, int, List)} resume after any earlier position with a
+ * binary search, whatever was added or removed in between.
+ * @author Sebastian Rone, sebron-4
+ */
+public class CustomerMap extends DenseHashTable<Customer> {
+    // Shared by every empty map
+    private static final long[] EMPTY_KEYS = {};
+    private static final long[] EMPTY_SEQUENCES = {};
+
+    private long[] keys = EMPTY_KEYS; // Packed social security numbers in insertion order
+    private long[] sequences = EMPTY_SEQUENCES; // Sequence number of each entry, ascending (kept for holes too)
+    private long nextSequence = 1; // Sequence number given to the next customer, 0 is the start cursor
+
+    /**
+     * Constructs an empty map.
+     */
+    public CustomerMap() {
+    }
+
+    /**
+     * Returns the customer with the given social security number key.
+     *
+     * @param key the packed social security number
+     * @return the customer, or null if there is none
+     */
+    public Customer get(long key) {
+        int entry = indexOf(key);
+        return entry < 0 ? null : valueAt(entry);
+    }
+
+    /**
+     * Checks whether a customer with the given social security number key is in the map.
+     *
+     * @param key the packed social security number
+     * @return true if the map contains the key
+     */
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Adds a customer under its own social security number unless that number is already taken.
+     *
+     * @param customer the customer to add
+     * @return true if the customer was added, false if the number was already in the map
+     */
+    public boolean putIfAbsent(Customer customer) {
+        long key = customer.getSsnKey();
+        if (indexOf(key) >= 0) {
+            return false;
+        }
+        int entry = newEntry();
+        keys[entry] = key;
+        sequences[entry] = nextSequence++;
+        link(entry, customer);
+        return true;
+    }
+
+    /**
+     * Removes the customer with the given social security number key in amortized constant time.
+     *
+     * @param key the packed social security number
+     * @return the removed customer, or null if the key was not in the map
+     */
+    public Customer remove(long key) {
+        int entry = indexOf(key);
+        return entry < 0 ? null : removeEntry(entry);
+    }
+
+    /**
+     * Reads the next page of customers in insertion order.
+     *
+     * @param cursor 0 to start from the beginning, otherwise a cursor returned by an earlier call
+     * @param limit the maximum number of customers to read
+     * @param page the list the customers are added to
+     * @return the cursor to pass to get the page after this one
+     */
+    public long page(long cursor, int limit, List<Customer> page) {
+        int entry = firstEntryAfter(cursor);
+        while (limit > 0 && entry < used()) {
+            Customer customer = valueAt(entry);
+            if (customer != null) {
+                page.add(customer);
+                cursor = sequences[entry];
+                limit--;
+            }
+            entry++;
+        }
+        return cursor;
+    }
+
+    /**
+     * Checks whether any customer was added after the given cursor position and is still in the map.
+     *
+     * @param cursor a cursor returned by {@link #page(long, int, List)}, or 0
+     * @return true if a page read from the cursor would not be empty
+     */
+    public boolean hasAfter(long cursor) {
+        for (int entry = firstEntryAfter(cursor); entry < used(); entry++) {
+            if (valueAt(entry) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected int hashAt(int entry) {
+        return SocialSecurityNumber.hash(keys[entry]);
+    }
+
+    @Override
+    protected void moveKey(int from, int to) {
+        keys[to] = keys[from];
+        sequences[to] = sequences[from];
+    }
+
+    @Override
+    protected void resizeKeys(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        sequences = Arrays.copyOf(sequences, capacity);
+    }
+
+    @Override
+    protected void clearKeys() {
+        keys = EMPTY_KEYS;
+        sequences = EMPTY_SEQUENCES;
+    }
+
+    /**
+     * Finds the first dense entry with a sequence number greater than the cursor.
+     *
+     * @param cursor the cursor
+     * @return the entry index, or used() if there is none
+     */
+    private int firstEntryAfter(long cursor) {
+        int low = 0;
+        int high = used();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sequences[mid] <= cursor) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the dense entry index of a key.
+     *
+     * @param key the packed social security number
+     * @return the entry index, or -1 if the key is not in the map
+     */
+    private int indexOf(long key) {
+        if (isEmpty()) {
+            return -1;
+        }
+        if (!isHashed()) {
+            for (int entry = 0; entry < used(); entry++) {
+                if (keys[entry] == key && valueAt(entry) != null) {
+                    return entry; // Small maps are scanned linearly, skipping removed entries
+                }
+            }
+            return -1;
+        }
+        for (int slot = firstSlot(SocialSecurityNumber.hash(key)); ; slot = nextSlot(slot)) {
+            int entry = entryAt(slot);
+            if (entry < 0 || keys[entry] == key) {
+                return entry; // Found, or reached an empty slot so the key is absent
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package sebron4;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * A sorted index over customer names that supports case-insensitive prefix search.
+ * Every customer is stored under two keys, "surname name" and "name surname", so a
+ * search matches on either name first. The index must be updated whenever a customer
+ * is added, renamed or removed.
+ *
+ * Search results are read a page at a time. The cursor of a page is the key of its last
+ * customer, so the next page starts right after it in the sorted map, however far into the
+ * results it is. A customer whose two keys both match the prefix is only reported at the
+ * smaller one, which needs no memory of earlier pages.
+ * @author Sebastian Rone, sebron-4
+ */
+public class CustomerNameIndex {
+    private static final char SEPARATOR = '\u0000'; // Sorts before every name character, keeps keys unique per customer
+    private static final char HIGHEST = '\uffff'; // Upper bound for prefix ranges
+
+    private final NavigableMap<String, Customer> index = new TreeMap<>(); // Normalized name keys mapped to customers
+
+    /**
+     * Adds a customer under its current name.
+     *
+     * @param customer the customer to add
+     */
+    public void add(Customer customer) {
+        index.put(surnameFirstKey(customer), customer);
+        index.put(nameFirstKey(customer), customer);
+    }
+
+    /**
+     * Removes a customer. Must be called before the customer's name is changed.
+     *
+     * @param customer the customer to remove
+     */
+    public void remove(Customer customer) {
+        index.remove(surnameFirstKey(customer));
+        index.remove(nameFirstKey(customer));
+    }
+
+    /**
+     * Removes every customer from the index.
+     */
+    public void clear() {
+        index.clear();
+    }
+
+    /**
+     * Finds customers whose "surname name" or "name surname" starts with the given prefix,
+     * ignoring case, and adds the next page of them to a list. Results are sorted by the
+     * matching name and each customer appears once.
+     *
+     * @param prefix the prefix to search for
+     * @param cursor null for the first page, otherwise the cursor returned for the previous page
+     * @param limit the maximum number of customers to add
+     * @param page the list the customers are added to
+     * @return the cursor to pass to get the page after this one
+     */
+    public String search(String prefix, String cursor, int limit, List<Customer> page) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        String from = normalize(prefix);
+        for (Map.Entry<String, Customer> entry : matchesAfter(from, cursor).entrySet()) {
+            if (limit == 0) {
+                break;
+            }
+            if (isReported(from, entry.getKey(), entry.getValue())) {
+                page.add(entry.getValue());
+                cursor = entry.getKey();
+                limit--;
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * Checks whether any customer matching the prefix comes after the given cursor.
+     *
+     * @param prefix the prefix to search for
+     * @param cursor a cursor returned by {@link #search(String, String, int, List)}, or null
+     * @return true if a page read from the cursor would not be empty
+     */
+    public boolean hasAfter(String prefix, String cursor) {
+        String from = normalize(prefix);
+        for (Map.Entry<String, Customer> entry : matchesAfter(from, cursor).entrySet()) {
+            if (isReported(from, entry.getKey(), entry.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the keys that start with a normalized prefix and come after a cursor.
+     *
+     * @param from the normalized prefix
+     * @param cursor the key to start after, or null to start at the first match
+     * @return a view of the matching part of the index
+     */
+    private NavigableMap<String, Customer> matchesAfter(String from, String cursor) {
+        String to = from + HIGHEST;
+        if (cursor == null || cursor.compareTo(from) < 0) {
+            return index.subMap(from, true, to, false);
+        }
+        return index.subMap(cursor, false, to, false);
+    }
+
+    /**
+     * Checks whether a customer is reported at the given key, which is the case unless its
+     * other key also matches the prefix and sorts first.
+     *
+     * @param from the normalized prefix
+     * @param key the key the customer was found under
+     * @param customer the customer
+     * @return true if the customer is reported at this key
+     */
+    private static boolean isReported(String from, String key, Customer customer) {
+        String surnameFirst = surnameFirstKey(customer);
+        String other = key.equals(surnameFirst) ? nameFirstKey(customer) : surnameFirst;
+        return !other.startsWith(from) || other.compareTo(key) >= 0;
+    }
+
+    /**
+     * Builds the key used to find a customer by surname.
+     *
+     * @param customer the customer
+     * @return the key
+     */
+    private static String surnameFirstKey(Customer customer) {
+        return normalize(customer.getSirName() + " " + customer.getName()) + SEPARATOR + Long.toHexString(customer.getSsnKey());
+    }
+
+    /**
+     * Builds the key used to find a customer by first name.
+     *
+     * @param customer the customer
+     * @return the key
+     */
+    private static String nameFirstKey(Customer customer) {
+        return normalize(customer.getName() + " " + customer.getSirName()) + SEPARATOR + Long.toHexString(customer.getSsnKey());
+    }
+
+    /**
+     * Lower-cases a name and collapses surrounding and repeated whitespace, in one pass.
+     *
+     * @param name the name to normalize
+     * @return the normalized name
+     */
+    private static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(name.length());
+        boolean space = false; // Whitespace seen since the last character kept
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = normalized.length() > 0; // Leading whitespace is dropped
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString(); // Trailing whitespace is never appended
+    }
+}
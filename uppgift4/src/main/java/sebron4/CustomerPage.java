@@ -0,0 +1,56 @@
+package sebron4;
+
+import java.util.List;
+
+/**
+ * One page of customers returned by {@link BankLogic#getCustomers(long, int)}, together
+ * with the cursor for reading the next page.
+ * @author Sebastian Rone, sebron-4
+ */
+public class CustomerPage {
+    private final List<String> customers; // Formatted customers on this page
+    private final long nextCursor; // Cursor to pass to get the following page
+    private final boolean hasMore; // Whether there were more customers after this page when it was read
+
+    /**
+     * Constructs a page.
+     *
+     * @param customers the formatted customers on the page
+     * @param nextCursor the cursor for the following page
+     * @param hasMore whether more customers follow
+     */
+    public CustomerPage(List<String> customers, long nextCursor, boolean hasMore) {
+        this.customers = customers;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * Gets the customers on this page, formatted like {@link BankLogic#getAllCustomers()}.
+     *
+     * @return the formatted customers
+     */
+    public List<String> getCustomers() {
+        return customers;
+    }
+
+    /**
+     * Gets the cursor to pass to {@link BankLogic#getCustomers(long, int)} for the next page.
+     * The cursor stays valid when customers are created or deleted in between.
+     *
+     * @return the cursor for the next page
+     */
+    public long getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Checks whether there were more customers after this page when it was read. Customers
+     * created later are picked up by reading on from the cursor anyway.
+     *
+     * @return true if more customers follow
+     */
+    public boolean hasMore() {
+        return hasMore;
+    }
+}
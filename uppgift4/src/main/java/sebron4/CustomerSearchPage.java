@@ -0,0 +1,56 @@
+package sebron4;
+
+import java.util.List;
+
+/**
+ * One page of customers found by {@link BankLogic#searchCustomers(String, String, int)},
+ * together with the cursor for reading the next page of the same search.
+ * @author Sebastian Rone, sebron-4
+ */
+public class CustomerSearchPage {
+    private final List<String> customers; // Formatted customers on this page
+    private final String nextCursor; // Cursor to pass to get the following page
+    private final boolean hasMore; // Whether there were more matches after this page when it was read
+
+    /**
+     * Constructs a page.
+     *
+     * @param customers the formatted customers on the page
+     * @param nextCursor the cursor for the following page
+     * @param hasMore whether more matching customers follow
+     */
+    public CustomerSearchPage(List<String> customers, String nextCursor, boolean hasMore) {
+        this.customers = customers;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * Gets the customers on this page, formatted like {@link BankLogic#getAllCustomers()}.
+     *
+     * @return the formatted customers
+     */
+    public List<String> getCustomers() {
+        return customers;
+    }
+
+    /**
+     * Gets the cursor to pass to {@link BankLogic#searchCustomers(String, String, int)},
+     * with the same prefix, for the next page. The cursor is a position in name order, so it
+     * stays valid when customers are created, renamed or deleted in between.
+     *
+     * @return the cursor for the next page, or null if the page is the first and empty
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Checks whether there were more matching customers after this page when it was read.
+     *
+     * @return true if more customers follow
+     */
+    public boolean hasMore() {
+        return hasMore;
+    }
+}
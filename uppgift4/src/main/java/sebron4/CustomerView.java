@@ -0,0 +1,46 @@
+package sebron4;
+
+import java.util.List;
+
+/**
+ * A read-only view of a customer, handed out by the streaming methods of {@link BankLogic}
+ * so that callers can read the fields they need without going through formatted strings.
+ * Customer implements it directly, so no wrapper objects are created.
+ * @author Sebastian Rone, sebron-4
+ */
+public interface CustomerView {
+    /**
+     * Gets the social security number, formatted for display.
+     *
+     * @return the social security number
+     */
+    String getSocialSecurityNumber();
+
+    /**
+     * Gets the social security number as the packed key used by the bank's indexes.
+     *
+     * @return the packed social security number
+     */
+    long getSsnKey();
+
+    /**
+     * Gets the first name.
+     *
+     * @return the first name
+     */
+    String getName();
+
+    /**
+     * Gets the last name (surname).
+     *
+     * @return the last name
+     */
+    String getSirName();
+
+    /**
+     * Gets the customer's accounts in the order they were opened.
+     *
+     * @return a read-only list of the accounts
+     */
+    List<? extends AccountView> getAccounts();
+}
@@ -0,0 +1,104 @@
+package sebron4;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Writes timestamps as "yyyy-MM-dd HH:mm:ss" in the system time zone, the same text as
+ * {@link SekFormat#DATE_TIME}, into a StringBuilder or other Appendable. The encoder
+ * remembers the day and UTC offset of the last timestamp it wrote, so consecutive
+ * transactions from the same day are written with integer arithmetic only and without
+ * creating any objects. An encoder is not thread-safe; use one per listing.
+ * @author Sebastian Rone, sebron-4
+ */
+public class DateTimeEncoder {
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd"); // Date part of SekFormat.DATE_TIME
+
+    private final ZoneRules rules = ZoneId.systemDefault().getRules(); // Time zone the times are written in
+    private String date; // "yyyy-MM-dd" of the cached day
+    private long windowStart = Long.MAX_VALUE; // First timestamp the cached day and offset apply to
+    private long windowEnd = Long.MIN_VALUE; // First timestamp after that window
+    private long wallMidnight; // Timestamp of local midnight of the cached day, computed with the cached offset
+
+    /**
+     * Appends a timestamp.
+     *
+     * @param out the builder to append to
+     * @param epochMillis the time in milliseconds since the epoch
+     * @return the builder
+     */
+    public StringBuilder append(StringBuilder out, long epochMillis) {
+        if (epochMillis < windowStart || epochMillis >= windowEnd) {
+            cacheDay(epochMillis);
+        }
+        long millisOfDay = epochMillis - wallMidnight;
+        int seconds = (int) (millisOfDay / 1000);
+        out.append(date);
+        out.append(' ');
+        appendTwoDigits(out, seconds / 3600);
+        out.append(':');
+        appendTwoDigits(out, seconds / 60 % 60);
+        out.append(':');
+        appendTwoDigits(out, seconds % 60);
+        return out;
+    }
+
+    /**
+     * Appends a timestamp.
+     *
+     * @param out the Appendable to append to
+     * @param epochMillis the time in milliseconds since the epoch
+     * @throws IOException if the Appendable fails
+     */
+    public void append(Appendable out, long epochMillis) throws IOException {
+        if (out instanceof StringBuilder builder) {
+            append(builder, epochMillis);
+            return;
+        }
+        StringBuilder text = new StringBuilder(19);
+        out.append(append(text, epochMillis));
+    }
+
+    /**
+     * Looks up the day and UTC offset of a timestamp and the window of time both of them apply to.
+     *
+     * @param epochMillis the time in milliseconds since the epoch
+     */
+    private void cacheDay(long epochMillis) {
+        Instant instant = Instant.ofEpochMilli(epochMillis);
+        ZoneOffset offset = rules.getOffset(instant);
+        long offsetMillis = offset.getTotalSeconds() * 1000L;
+        LocalDate day = LocalDate.ofEpochDay(Math.floorDiv(epochMillis + offsetMillis, MILLIS_PER_DAY));
+        wallMidnight = day.toEpochDay() * MILLIS_PER_DAY - offsetMillis;
+        windowStart = wallMidnight;
+        windowEnd = wallMidnight + MILLIS_PER_DAY;
+
+        // Narrow the window to the part of the day without an offset change
+        ZoneOffsetTransition previous = rules.previousTransition(instant.plusMillis(1));
+        if (previous != null) {
+            windowStart = Math.max(windowStart, previous.toEpochSecond() * 1000);
+        }
+        ZoneOffsetTransition next = rules.nextTransition(instant);
+        if (next != null) {
+            windowEnd = Math.min(windowEnd, next.toEpochSecond() * 1000);
+        }
+        date = day.format(DATE);
+    }
+
+    /**
+     * Appends a number from 0 to 99 as two digits.
+     *
+     * @param out the builder to append to
+     * @param value the number
+     */
+    private static void appendTwoDigits(StringBuilder out, int value) {
+        out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
@@ -0,0 +1,409 @@
+package sebron4;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The storage shared by {@link AccountMap} and {@link CustomerMap}: values in insertion order
+ * in dense arrays and, once there are more than a handful of them, an open-addressing hash
+ * table (linear probing, backward-shift deletion) pointing into the dense arrays. Removal
+ * leaves a hole in the dense arrays, which are compacted once more than a quarter of the
+ * entries are holes.
+ *
+ * The keys are primitives kept by the subclasses in dense arrays of their own, so lookups
+ * never box a key. A subclass hashes and compares its keys and moves them along when the
+ * entries are grown or compacted; all the probing and bookkeeping is done here.
+ *
+ * An empty table shares static empty arrays and allocates nothing until the first value is
+ * added, which matters for the many customers that hold no accounts at all.
+ * @author Sebastian Rone, sebron-4
+ */
+abstract class DenseHashTable<V> implements Iterable<V> {
+    private static final int LINEAR_LIMIT = 8; // Up to this many entries the dense arrays are scanned without a hash table
+    private static final int MIN_CAPACITY = 4; // Dense capacity allocated on the first insert
+
+    // Shared by every empty table
+    private static final Object[] EMPTY_VALUES = {};
+    private static final int[] EMPTY_TABLE = {};
+
+    private Object[] values = EMPTY_VALUES; // Values in insertion order, null where an entry was removed
+    private int[] table = EMPTY_TABLE; // Hash slots holding entry index + 1, 0 for empty slots
+    private int used; // Number of dense entries in use, including removed ones
+    private int size; // Number of values in the table
+    private List<V> view; // Lazily created read-only list view
+
+    /**
+     * Computes the hash of the key stored in a dense entry.
+     *
+     * @param entry the dense entry index
+     * @return the mixed hash of its key
+     */
+    protected abstract int hashAt(int entry);
+
+    /**
+     * Moves a key to an earlier dense entry while the entries are compacted.
+     *
+     * @param from the entry the key is moved from
+     * @param to the entry the key is moved to
+     */
+    protected abstract void moveKey(int from, int to);
+
+    /**
+     * Grows the key arrays, keeping their contents.
+     *
+     * @param capacity the new number of dense entries
+     */
+    protected abstract void resizeKeys(int capacity);
+
+    /**
+     * Drops the key arrays, returning them to their shared empty representation.
+     */
+    protected abstract void clearKeys();
+
+    /**
+     * Returns the number of values in the table.
+     *
+     * @return the number of values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the table holds no values.
+     *
+     * @return true if the table is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every value, returning the table to the shared empty representation.
+     */
+    public void clear() {
+        values = EMPTY_VALUES;
+        table = EMPTY_TABLE;
+        clearKeys();
+        used = 0;
+        size = 0;
+    }
+
+    /**
+     * Returns a read-only list of the values in insertion order. The list reflects later
+     * changes to the table.
+     * Positional access is constant time unless values have been removed since the arrays
+     * were last compacted, when it counts its way past the holes.
+     *
+     * @return a list view of the values
+     */
+    public List<V> values() {
+        if (view == null) {
+            view = new AbstractList<>() {
+                @Override
+                public V get(int index) {
+                    if (index < 0 || index >= size) {
+                        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                    }
+                    if (size == used) {
+                        return valueAt(index); // No holes, the position is the entry
+                    }
+                    for (int entry = 0; ; entry++) { // Count live entries, reads must not compact
+                        if (values[entry] != null && index-- == 0) {
+                            return valueAt(entry);
+                        }
+                    }
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public Iterator<V> iterator() {
+                    return DenseHashTable.this.iterator();
+                }
+            };
+        }
+        return view;
+    }
+
+    /**
+     * Returns an iterator over the values in insertion order. The iterator does not
+     * support removal and must not be used while the table is modified.
+     *
+     * @return an iterator over the values
+     */
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<>() {
+            private int next = skipRemoved(0); // Dense index of the next value
+
+            @Override
+            public boolean hasNext() {
+                return next < used;
+            }
+
+            @Override
+            public V next() {
+                if (next >= used) {
+                    throw new NoSuchElementException();
+                }
+                V value = valueAt(next);
+                next = skipRemoved(next + 1);
+                return value;
+            }
+
+            private int skipRemoved(int from) {
+                while (from < used && values[from] == null) {
+                    from++;
+                }
+                return from;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of dense entries in use, including removed ones. Entries are in
+     * insertion order, so a subclass can keep other per-entry data sorted by it.
+     *
+     * @return the number of dense entries in use
+     */
+    protected final int used() {
+        return used;
+    }
+
+    /**
+     * Returns the value of a dense entry.
+     *
+     * @param entry the dense entry index
+     * @return the value, or null if the entry was removed
+     */
+    @SuppressWarnings("unchecked")
+    protected final V valueAt(int entry) {
+        return (V) values[entry];
+    }
+
+    /**
+     * Checks whether the entries are found through the hash table rather than by scanning
+     * the dense arrays, which small tables do.
+     *
+     * @return true if there is a hash table
+     */
+    protected final boolean isHashed() {
+        return table.length != 0;
+    }
+
+    /**
+     * Returns the slot a key with the given hash is probed from.
+     *
+     * @param hash the mixed hash of the key
+     * @return the first slot to probe
+     */
+    protected final int firstSlot(int hash) {
+        return hash & (table.length - 1);
+    }
+
+    /**
+     * Returns the slot probed after the given one.
+     *
+     * @param slot the slot just probed
+     * @return the next slot to probe
+     */
+    protected final int nextSlot(int slot) {
+        return (slot + 1) & (table.length - 1);
+    }
+
+    /**
+     * Returns the dense entry a hash slot points at.
+     *
+     * @param slot the slot
+     * @return the entry index, or -1 if the slot is empty, which ends the probe
+     */
+    protected final int entryAt(int slot) {
+        return table[slot] - 1;
+    }
+
+    /**
+     * Reserves the next dense entry for a new value, growing or compacting the arrays if
+     * they are full. The subclass stores the key in the entry and then calls
+     * {@link #link(int, Object)}.
+     *
+     * @return the dense entry index
+     */
+    protected final int newEntry() {
+        if (used == values.length) {
+            growEntries(); // Make room in the dense arrays, compacting removed entries first
+        }
+        return used++;
+    }
+
+    /**
+     * Stores the value of an entry reserved with {@link #newEntry()} whose key has been set,
+     * and makes it reachable through the hash table.
+     *
+     * @param entry the dense entry index
+     * @param value the value, not null
+     */
+    protected final void link(int entry, V value) {
+        values[entry] = value;
+        size++;
+        if (table.length != 0) {
+            if (used > table.length - (table.length >>> 2)) {
+                rebuildTable(table.length << 1); // Keep the load factor below 75 %
+            } else {
+                insertSlot(entry);
+            }
+        } else if (used > LINEAR_LIMIT) {
+            rebuildTable(tableCapacityFor(used)); // Too many entries for a linear scan
+        }
+    }
+
+    /**
+     * Replaces the value of an entry in place, keeping its position.
+     *
+     * @param entry the dense entry index
+     * @param value the new value, not null
+     * @return the previous value
+     */
+    protected final V replace(int entry, V value) {
+        V previous = valueAt(entry);
+        values[entry] = value;
+        return previous;
+    }
+
+    /**
+     * Removes an entry in amortized constant time. The freed dense entry is left as a hole,
+     * and the arrays are compacted once more than a quarter of the entries are holes.
+     *
+     * @param entry the dense entry index of a value in the table
+     * @return the removed value
+     */
+    protected final V removeEntry(int entry) {
+        V removed = valueAt(entry);
+        if (table.length != 0) {
+            removeSlot(entry); // Must run while the key is still in its dense entry
+        }
+        values[entry] = null;
+        size--;
+        if (entry == used - 1) {
+            used--; // Removing the newest entry needs no hole
+        }
+        if (size == 0) {
+            used = 0; // Reuse the arrays from the start
+        } else if (size < used - (used >>> 2)) {
+            compact(); // More than a quarter of the entries are holes
+        }
+        return removed;
+    }
+
+    /**
+     * Points a free hash slot at a dense entry.
+     *
+     * @param entry the dense entry index
+     */
+    private void insertSlot(int entry) {
+        int slot = firstSlot(hashAt(entry));
+        while (table[slot] != 0) {
+            slot = nextSlot(slot);
+        }
+        table[slot] = entry + 1;
+    }
+
+    /**
+     * Clears the hash slot of a dense entry and moves later entries of the cluster
+     * backwards so that no probe sequence is broken.
+     *
+     * @param entry the dense entry being removed
+     */
+    private void removeSlot(int entry) {
+        int mask = table.length - 1;
+        int gap = firstSlot(hashAt(entry));
+        while (table[gap] != entry + 1) {
+            gap = nextSlot(gap); // Entries are unique, so the slot is found without comparing keys
+        }
+        int slot = gap;
+        while (true) {
+            slot = nextSlot(slot);
+            int ref = table[slot];
+            if (ref == 0) {
+                break; // End of the cluster
+            }
+            int home = firstSlot(hashAt(ref - 1));
+            // Move the slot into the gap unless its home lies cyclically in (gap, slot]
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                table[gap] = ref;
+                gap = slot;
+            }
+        }
+        table[gap] = 0;
+    }
+
+    /**
+     * Makes room for one more dense entry, either by compacting removed entries or by
+     * growing the arrays.
+     */
+    private void growEntries() {
+        if (size < used - (used >>> 2)) {
+            compact(); // More than a quarter of the entries are holes
+            return;
+        }
+        int capacity = Math.max(MIN_CAPACITY, values.length + (values.length >>> 1));
+        values = Arrays.copyOf(values, capacity);
+        resizeKeys(capacity);
+    }
+
+    /**
+     * Moves all live entries to the front of the dense arrays, keeping their order, and
+     * rebuilds the hash table if there is one.
+     */
+    private void compact() {
+        if (size == used) {
+            return; // No holes
+        }
+        int to = 0;
+        for (int from = 0; from < used; from++) {
+            if (values[from] != null) {
+                if (from != to) {
+                    values[to] = values[from];
+                    moveKey(from, to);
+                }
+                to++;
+            }
+        }
+        Arrays.fill(values, to, used, null);
+        used = to;
+        if (table.length != 0) {
+            rebuildTable(table.length);
+        }
+    }
+
+    /**
+     * Rebuilds the hash table with the given capacity from the dense arrays.
+     *
+     * @param capacity the new table capacity (a power of two)
+     */
+    private void rebuildTable(int capacity) {
+        table = new int[capacity];
+        for (int entry = 0; entry < used; entry++) {
+            if (values[entry] != null) {
+                insertSlot(entry);
+            }
+        }
+    }
+
+    /**
+     * Computes a table capacity that keeps the load factor below 75 %.
+     *
+     * @param entries the number of entries to hold
+     * @return a power-of-two capacity
+     */
+    private static int tableCapacityFor(int entries) {
+        int capacity = Integer.highestOneBit(entries) << 1;
+        return entries > capacity - (capacity >>> 2) ? capacity << 1 : capacity;
+    }
+}
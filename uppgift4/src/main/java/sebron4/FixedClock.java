@@ -0,0 +1,59 @@
+package sebron4;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A deterministic clock for tests and replay. It starts at a given time and moves forward
+ * only by a fixed step on each read, or when it is set or advanced.
+ * @author Sebastian Rone, sebron-4
+ */
+public class FixedClock implements BankClock {
+    private final AtomicLong now; // Time returned by the next read, in milliseconds since the epoch
+    private final long stepMillis; // Amount the time moves forward on every read
+
+    /**
+     * Constructs a clock that always returns the same time until it is changed.
+     *
+     * @param epochMillis the time, in milliseconds since the epoch
+     */
+    public FixedClock(long epochMillis) {
+        this(epochMillis, 0);
+    }
+
+    /**
+     * Constructs a clock that moves forward by a fixed step on each read.
+     *
+     * @param epochMillis the time of the first read, in milliseconds since the epoch
+     * @param stepMillis the amount to move forward after each read, not negative
+     */
+    public FixedClock(long epochMillis, long stepMillis) {
+        if (stepMillis < 0) {
+            throw new IllegalArgumentException("stepMillis must not be negative");
+        }
+        this.now = new AtomicLong(epochMillis);
+        this.stepMillis = stepMillis;
+    }
+
+    @Override
+    public long millis() {
+        return now.getAndAdd(stepMillis);
+    }
+
+    /**
+     * Sets the time of the next read.
+     *
+     * @param epochMillis the time, in milliseconds since the epoch
+     */
+    public void set(long epochMillis) {
+        now.set(epochMillis);
+    }
+
+    /**
+     * Moves the clock forward.
+     *
+     * @param millis the amount to move forward, in milliseconds
+     */
+    public void advance(long millis) {
+        now.addAndGet(millis);
+    }
+}
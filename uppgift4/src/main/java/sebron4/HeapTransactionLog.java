@@ -0,0 +1,47 @@
+package sebron4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A transaction log that keeps one {@link Transaction} object per entry.
+ * @author Sebastian Rone, sebron-4
+ */
+public class HeapTransactionLog implements TransactionLog {
+    private final List<Transaction> transactions = new ArrayList<>(); // Transactions in time order
+
+    @Override
+    public void append(long epochMillis, TransactionType type, long amountOre, long balanceAfterOre) {
+        transactions.add(new Transaction(type, amountOre, balanceAfterOre, epochMillis));
+    }
+
+    @Override
+    public int size() {
+        return transactions.size();
+    }
+
+    @Override
+    public long timestampAt(int index) {
+        return transactions.get(index).getEpochMillis();
+    }
+
+    @Override
+    public TransactionType typeAt(int index) {
+        return transactions.get(index).getType();
+    }
+
+    @Override
+    public long amountAt(int index) {
+        return transactions.get(index).getAmountOre();
+    }
+
+    @Override
+    public long balanceAfterAt(int index) {
+        return transactions.get(index).getBalanceAfterOre();
+    }
+
+    @Override
+    public Transaction get(int index) {
+        return transactions.get(index); // Already an object, no need to rebuild it
+    }
+}
@@ -0,0 +1,187 @@
+package sebron4;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money arithmetic. All amounts in the bank are held as a long number of öre
+ * (1 kr = 100 öre) and all rates as basis points (1 % = 100 basis points), so every
+ * calculation is exact integer arithmetic and gives the same result on every JVM.
+ * Rounding only happens where an amount has to be rounded to whole öre, and always with
+ * an explicit rounding mode:
+ * <ul>
+ *     <li>{@link #INPUT_ROUNDING} when converting amounts entered in kronor,</li>
+ *     <li>{@link #CALCULATION_ROUNDING} when applying fees and interest.</li>
+ * </ul>
+ * @author Sebastian Rone, sebron-4
+ */
+public final class Money {
+    /** Öre per krona. */
+    public static final long ORE_PER_KRONA = 100;
+    /** Basis points per whole (100 %). */
+    public static final long BASIS_POINTS = 10_000;
+    /** Rounding used when amounts in kronor are converted to öre. */
+    public static final RoundingMode INPUT_ROUNDING = RoundingMode.HALF_UP;
+    /** Rounding used when fees and interest are calculated (banker's rounding). */
+    public static final RoundingMode CALCULATION_ROUNDING = RoundingMode.HALF_EVEN;
+
+    private Money() {
+    }
+
+    /**
+     * Converts whole kronor to öre.
+     *
+     * @param kronor the amount in kronor
+     * @return the amount in öre
+     * @throws ArithmeticException if the result does not fit in a long
+     */
+    public static long ofKronor(long kronor) {
+        return Math.multiplyExact(kronor, ORE_PER_KRONA);
+    }
+
+    /**
+     * Converts an amount in kronor to öre, rounding with {@link #INPUT_ROUNDING}. The double is
+     * read by its shortest decimal representation, so 333.33 becomes exactly 33 333 öre.
+     *
+     * @param kronor the amount in kronor
+     * @return the amount in öre
+     * @throws ArithmeticException if the amount is not finite or does not fit in a long
+     */
+    public static long ofKronor(double kronor) {
+        return ofKronor(kronor, INPUT_ROUNDING);
+    }
+
+    /**
+     * Converts an amount in kronor to öre with the given rounding mode.
+     *
+     * @param kronor the amount in kronor
+     * @param mode how to round to whole öre
+     * @return the amount in öre
+     * @throws ArithmeticException if the amount is not finite or does not fit in a long
+     */
+    public static long ofKronor(double kronor, RoundingMode mode) {
+        if (!Double.isFinite(kronor)) {
+            throw new ArithmeticException("Amount is not a finite number: " + kronor);
+        }
+        return BigDecimal.valueOf(kronor).movePointRight(2).setScale(0, mode).longValueExact();
+    }
+
+    /**
+     * Parses an amount in kronor as entered, such as "250" or "99.95", straight to öre without
+     * going through a double, rounding with {@link #INPUT_ROUNDING}.
+     *
+     * @param kronor the amount in kronor
+     * @return the amount in öre
+     * @throws NumberFormatException if the text is not a decimal number
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public static long parseKronor(String kronor) {
+        return new BigDecimal(kronor.trim()).movePointRight(2).setScale(0, INPUT_ROUNDING).longValueExact();
+    }
+
+    /**
+     * Converts öre to kronor as a double, for callers that still work with doubles.
+     *
+     * @param ore the amount in öre
+     * @return the amount in kronor
+     */
+    public static double toKronor(long ore) {
+        return ore / (double) ORE_PER_KRONA;
+    }
+
+    /**
+     * Converts öre to an exact decimal amount in kronor, for formatting.
+     *
+     * @param ore the amount in öre
+     * @return the amount in kronor with two decimals
+     */
+    public static BigDecimal toBigDecimal(long ore) {
+        return BigDecimal.valueOf(ore, 2);
+    }
+
+    /**
+     * Applies a rate to an amount, for example 2.4 % interest is 240 basis points. Amounts too
+     * large to multiply by the rate in a long are calculated with BigDecimal instead.
+     *
+     * @param ore the amount in öre
+     * @param basisPoints the rate in basis points
+     * @param mode how to round the result to whole öre
+     * @return the rate applied to the amount, in öre
+     * @throws ArithmeticException if the result does not fit in a long
+     */
+    public static long applyRate(long ore, long basisPoints, RoundingMode mode) {
+        long high = Math.multiplyHigh(ore, basisPoints);
+        long product = ore * basisPoints;
+        if (high == (product >> 63)) {
+            return divide(product, BASIS_POINTS, mode); // The product fits in a long
+        }
+        return BigDecimal.valueOf(ore).multiply(BigDecimal.valueOf(basisPoints))
+                .divide(BigDecimal.valueOf(BASIS_POINTS), 0, mode).longValueExact();
+    }
+
+    /**
+     * Converts a rate in basis points to a percentage, for display.
+     *
+     * @param basisPoints the rate in basis points
+     * @return the rate in percent
+     */
+    public static double toPercent(long basisPoints) {
+        return basisPoints / 100.0;
+    }
+
+    /**
+     * Divides two longs and rounds the quotient with the given rounding mode, using integer
+     * arithmetic only.
+     *
+     * @param dividend the dividend
+     * @param divisor the divisor, which must be positive
+     * @param mode how to round the quotient
+     * @return the rounded quotient
+     * @throws ArithmeticException if the mode is UNNECESSARY and the division is not exact
+     */
+    public static long divide(long dividend, long divisor, RoundingMode mode) {
+        if (divisor <= 0) {
+            throw new IllegalArgumentException("divisor must be positive");
+        }
+        long quotient = dividend / divisor; // Truncated towards zero
+        long remainder = dividend % divisor; // Same sign as the dividend
+        if (remainder == 0) {
+            return quotient;
+        }
+        int sign = dividend < 0 ? -1 : 1;
+        boolean awayFromZero;
+        switch (mode) {
+            case DOWN:
+                awayFromZero = false;
+                break;
+            case UP:
+                awayFromZero = true;
+                break;
+            case FLOOR:
+                awayFromZero = sign < 0;
+                break;
+            case CEILING:
+                awayFromZero = sign > 0;
+                break;
+            case UNNECESSARY:
+                throw new ArithmeticException("Rounding necessary");
+            default: {
+                // HALF_UP, HALF_DOWN, HALF_EVEN: compare the remainder with what is left of the divisor
+                long left = Math.abs(remainder); // Fits: |remainder| < divisor
+                long right = divisor - left; // Distance to the next multiple, without doubling the remainder
+                if (left > right) {
+                    awayFromZero = true;
+                } else if (left < right) {
+                    awayFromZero = false;
+                } else if (mode == RoundingMode.HALF_UP) {
+                    awayFromZero = true;
+                } else if (mode == RoundingMode.HALF_DOWN) {
+                    awayFromZero = false;
+                } else {
+                    awayFromZero = (quotient & 1) != 0; // HALF_EVEN: round to the even neighbour
+                }
+            }
+        }
+        return awayFromZero ? quotient + sign : quotient;
+    }
+}
@@ -0,0 +1,104 @@
+package sebron4;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A pool of names that lets equal strings share one instance. Customers are given pooled
+ * first and last names, and accounts read from file a pooled account type, so a bank with
+ * millions of customers holds each distinct name once. The pool only holds its strings
+ * weakly, so names that no customer uses any more can be collected.
+ *
+ * The pool counts the duplicates it replaced and estimates the heap they took up, which is
+ * what sharing saved.
+ * @author Sebastian Rone, sebron-4
+ */
+public final class NamePool {
+    private static final NamePool SHARED = new NamePool(); // Pool used by Customer and Account
+    private static final int STRING_OBJECT_BYTES = 24; // String header and fields with compressed references
+    private static final int ARRAY_HEADER_BYTES = 16; // byte[] header and length
+
+    private final Map<String, WeakReference<String>> pool = new WeakHashMap<>(); // Each pooled name, keyed by itself
+    private long duplicates; // Number of strings replaced by a pooled instance
+    private long bytesSaved; // Estimated heap size of those strings
+
+    /**
+     * Returns the pool shared by customers and accounts.
+     *
+     * @return the shared pool
+     */
+    public static NamePool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the pooled instance of a name, adding the name if it is not in the pool yet.
+     *
+     * @param name the name, or null
+     * @return a string equal to the name, or null if the name is null
+     */
+    public synchronized String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+        WeakReference<String> ref = pool.get(name);
+        String pooled = ref != null ? ref.get() : null;
+        if (pooled == null) {
+            pool.put(name, new WeakReference<>(name)); // The value must not hold the key strongly
+            return name;
+        }
+        if (pooled != name) {
+            duplicates++;
+            bytesSaved += sizeOf(name);
+        }
+        return pooled;
+    }
+
+    /**
+     * Returns the number of distinct names in the pool.
+     *
+     * @return the number of pooled names
+     */
+    public synchronized int size() {
+        return pool.size();
+    }
+
+    /**
+     * Returns the number of strings that were replaced by a pooled instance.
+     *
+     * @return the number of duplicates
+     */
+    public synchronized long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Returns the estimated heap size of the strings that were replaced by a pooled instance,
+     * which is the memory the pool has saved.
+     *
+     * @return the saved bytes
+     */
+    public synchronized long getBytesSaved() {
+        return bytesSaved;
+    }
+
+    /**
+     * Estimates the heap size of a string: the String object and its byte array, which holds
+     * one byte per character for Latin-1 text and two otherwise, rounded up to 8 bytes.
+     *
+     * @param s the string
+     * @return the estimated size in bytes
+     */
+    static long sizeOf(String s) {
+        int bytesPerChar = 1;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0xFF) {
+                bytesPerChar = 2; // Not Latin-1, stored as UTF-16
+                break;
+            }
+        }
+        long array = (ARRAY_HEADER_BYTES + (long) s.length() * bytesPerChar + 7) & ~7L;
+        return STRING_OBJECT_BYTES + array;
+    }
+}
@@ -0,0 +1,116 @@
+package sebron4;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Direct memory shared by the {@link OffHeapTransactionLog}s of all accounts. The memory is
+ * reserved a few large slabs at a time and handed out as fixed-size blocks of
+ * {@value #BLOCK_BYTES} bytes, named by a block number from which the slab and the offset in
+ * it follow. An account with a short history therefore costs one block rather than a direct
+ * buffer of its own with its own Cleaner, and a million accounts need only a few hundred slabs.
+ *
+ * Blocks are given back with {@link #free(int[], int)} when a log is closed and are reused by
+ * later logs. Slabs are never released, so the direct memory in use is the largest amount
+ * the logs have needed at once. Direct memory is limited by {@code -XX:MaxDirectMemorySize},
+ * which defaults to the maximum heap size.
+ *
+ * Allocating and freeing are synchronized. Reading and writing a block needs no lock, since
+ * every block belongs to one log at a time and slabs are only accessed at absolute offsets.
+ * @author Sebastian Rone, sebron-4
+ */
+public final class OffHeapArena {
+    /** Bytes per block. */
+    public static final int BLOCK_BYTES = 512;
+    private static final int SLAB_SHIFT = 13; // 2^13 blocks of 512 bytes make a 4 MB slab
+    private static final int BLOCKS_PER_SLAB = 1 << SLAB_SHIFT;
+    private static final OffHeapArena SHARED = new OffHeapArena(); // Arena used by OffHeapTransactionLog
+
+    private volatile ByteBuffer[] slabs = {}; // Replaced, never changed, when a slab is added
+    private int nextBlock; // First block that has never been handed out
+    private int[] freeBlocks = new int[64]; // Blocks given back, reused last in first out
+    private int freeCount; // Number of entries in freeBlocks
+
+    /**
+     * Returns the arena shared by the off-heap transaction logs.
+     *
+     * @return the shared arena
+     */
+    public static OffHeapArena shared() {
+        return SHARED;
+    }
+
+    /**
+     * Hands out a block, reserving a new slab if every block is in use.
+     *
+     * @return the block number
+     * @throws IllegalStateException if the arena has run out of block numbers
+     */
+    public synchronized int allocate() {
+        if (freeCount > 0) {
+            return freeBlocks[--freeCount];
+        }
+        if (nextBlock == slabs.length * BLOCKS_PER_SLAB) {
+            if (slabs.length == Integer.MAX_VALUE >>> SLAB_SHIFT) {
+                throw new IllegalStateException("Off-heap arena is full");
+            }
+            ByteBuffer[] grown = Arrays.copyOf(slabs, slabs.length + 1);
+            grown[slabs.length] = ByteBuffer.allocateDirect(BLOCKS_PER_SLAB * BLOCK_BYTES).order(ByteOrder.nativeOrder());
+            slabs = grown; // Published to readers by the volatile write
+        }
+        return nextBlock++;
+    }
+
+    /**
+     * Gives blocks back to the arena. They must not be used afterwards.
+     *
+     * @param blocks the block numbers
+     * @param count the number of blocks, taken from the start of the array
+     */
+    public synchronized void free(int[] blocks, int count) {
+        if (freeCount + count > freeBlocks.length) {
+            freeBlocks = Arrays.copyOf(freeBlocks, Math.max(freeBlocks.length * 2, freeCount + count));
+        }
+        System.arraycopy(blocks, 0, freeBlocks, freeCount, count);
+        freeCount += count;
+    }
+
+    /**
+     * Returns the slab holding a block.
+     *
+     * @param block the block number
+     * @return the slab, to be read and written at {@link #offsetOf(int)} and the following bytes
+     */
+    public ByteBuffer slabOf(int block) {
+        return slabs[block >>> SLAB_SHIFT];
+    }
+
+    /**
+     * Returns the byte offset of a block within its slab.
+     *
+     * @param block the block number
+     * @return the byte offset
+     */
+    public static int offsetOf(int block) {
+        return (block & (BLOCKS_PER_SLAB - 1)) * BLOCK_BYTES;
+    }
+
+    /**
+     * Returns the direct memory the arena has reserved.
+     *
+     * @return the size of all slabs in bytes
+     */
+    public long getReservedBytes() {
+        return (long) slabs.length * BLOCKS_PER_SLAB * BLOCK_BYTES;
+    }
+
+    /**
+     * Returns the direct memory held by blocks that are in use.
+     *
+     * @return the size of the blocks in use in bytes
+     */
+    public synchronized long getUsedBytes() {
+        return (long) (nextBlock - freeCount) * BLOCK_BYTES;
+    }
+}
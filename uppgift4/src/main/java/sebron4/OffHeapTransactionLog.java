@@ -0,0 +1,161 @@
+package sebron4;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A transaction log that keeps the history outside the Java heap, in blocks of direct
+ * memory taken from an {@link OffHeapArena}, as fixed-width records of {@value #RECORD_SIZE}
+ * bytes:
+ * <pre>
+ *  0  timestamp, milliseconds since the epoch (long)
+ *  8  amount in öre (long)
+ * 16  balance after in öre (long)
+ * 24  TransactionType code (byte), followed by padding up to the next record
+ * </pre>
+ * A block holds {@value #BLOCK_RECORDS} records and the log takes a new one each time the
+ * last fills up, so the heap only holds this object and an array with one int per block,
+ * under 1 % of the size of the history. Logs share the arena's slabs instead of allocating
+ * direct buffers of their own.
+ *
+ * The blocks are given back to the arena by {@link #close()}, which the account calls when
+ * the log is replaced or the account is removed. A log that is dropped without being closed
+ * keeps its blocks until the program exits.
+ *
+ * One thread may append while others read without a lock: a record is written completely
+ * before the volatile size that makes it visible is increased.
+ * @author Sebastian Rone, sebron-4
+ */
+public class OffHeapTransactionLog implements TransactionLog {
+    /** Bytes per record, padded so that every long is 8-byte aligned. */
+    public static final int RECORD_SIZE = 32;
+    private static final int TIMESTAMP_OFFSET = 0;
+    private static final int AMOUNT_OFFSET = 8;
+    private static final int BALANCE_AFTER_OFFSET = 16;
+    private static final int TYPE_OFFSET = 24;
+    private static final int BLOCK_RECORDS = OffHeapArena.BLOCK_BYTES / RECORD_SIZE; // Records per arena block
+    private static final int[] NO_BLOCKS = {}; // Shared by logs that have no entries yet
+
+    private final OffHeapArena arena; // Where the blocks come from
+    private int[] blocks = NO_BLOCKS; // Arena block numbers in record order, the only heap cost of the history
+    private volatile int size; // Number of records written
+    private boolean closed; // Whether the blocks have been given back
+
+    /**
+     * Constructs an empty log that takes its blocks from the shared arena.
+     */
+    public OffHeapTransactionLog() {
+        this(OffHeapArena.shared());
+    }
+
+    /**
+     * Constructs an empty log that takes its blocks from the given arena.
+     *
+     * @param arena the arena
+     */
+    public OffHeapTransactionLog(OffHeapArena arena) {
+        this.arena = arena;
+    }
+
+    @Override
+    public void append(long epochMillis, TransactionType type, long amountOre, long balanceAfterOre) {
+        if (closed) {
+            throw new IllegalStateException("The transaction log has been closed");
+        }
+        if (size == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Transaction log is full");
+        }
+        int blockIndex = size / BLOCK_RECORDS;
+        if (size % BLOCK_RECORDS == 0) {
+            if (blockIndex == blocks.length) {
+                blocks = Arrays.copyOf(blocks, Math.max(4, blocks.length * 2));
+            }
+            blocks[blockIndex] = arena.allocate();
+        }
+        int block = blocks[blockIndex];
+        ByteBuffer slab = arena.slabOf(block);
+        int offset = OffHeapArena.offsetOf(block) + size % BLOCK_RECORDS * RECORD_SIZE;
+        slab.putLong(offset + TIMESTAMP_OFFSET, epochMillis);
+        slab.putLong(offset + AMOUNT_OFFSET, amountOre);
+        slab.putLong(offset + BALANCE_AFTER_OFFSET, balanceAfterOre);
+        slab.put(offset + TYPE_OFFSET, type.code());
+        size++; // Publish the record only once it is complete
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long timestampAt(int index) {
+        return readLong(index, TIMESTAMP_OFFSET);
+    }
+
+    @Override
+    public TransactionType typeAt(int index) {
+        int block = blockOf(index);
+        return TransactionType.ofCode(arena.slabOf(block).get(offsetOf(block, index) + TYPE_OFFSET));
+    }
+
+    @Override
+    public long amountAt(int index) {
+        return readLong(index, AMOUNT_OFFSET);
+    }
+
+    @Override
+    public long balanceAfterAt(int index) {
+        return readLong(index, BALANCE_AFTER_OFFSET);
+    }
+
+    /**
+     * Gives the blocks back to the arena, where other logs reuse them.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            int blockCount = (size + BLOCK_RECORDS - 1) / BLOCK_RECORDS;
+            size = 0; // Reads fail from here on
+            arena.free(blocks, blockCount);
+            blocks = NO_BLOCKS;
+        }
+    }
+
+    /**
+     * Reads a long field of a record.
+     *
+     * @param index the position of the record
+     * @param field the offset of the field within the record
+     * @return the field value
+     */
+    private long readLong(int index, int field) {
+        int block = blockOf(index);
+        return arena.slabOf(block).getLong(offsetOf(block, index) + field);
+    }
+
+    /**
+     * Finds the arena block holding a record that has been written.
+     *
+     * @param index the position of the record
+     * @return the block number
+     */
+    private int blockOf(int index) {
+        int written = size; // Read first, so that the blocks array is at least as new
+        if (index < 0 || index >= written) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + written);
+        }
+        return blocks[index / BLOCK_RECORDS];
+    }
+
+    /**
+     * Finds the byte offset of a record within the slab of its block.
+     *
+     * @param block the block holding the record
+     * @param index the position of the record
+     * @return the byte offset
+     */
+    private static int offsetOf(int block, int index) {
+        return OffHeapArena.offsetOf(block) + index % BLOCK_RECORDS * RECORD_SIZE;
+    }
+}
@@ -1,17 +1,24 @@
 package sebron4;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serial;
+
 /**
  * Represents a savings account that allows deposits, withdrawals, and interest accumulation.
  * This account type may have a fee for withdrawals after the first free withdrawal.
  * @author Sebastian Rone, sebron-4
  */
 public class SavingsAccount extends Account {
-    // Constants for withdrawal fee percentage and interest rate
-    private static final double WITHDRAWAL_FEE_PERCENTAGE = 0.02; // 2% fee on withdrawals
-    private static final double INTEREST_RATE = 0.024; // 2.4% interest rate for the account
-
-    // Flag to determine if the first withdrawal is free of charge
-    private boolean firstWithdrawalFree;
+    @Serial
+    private static final long serialVersionUID = 9178635987674047840L; // Value computed for the original class, keeps saved files readable
+    // Older versions kept the free withdrawal flag here, it is still written so those files keep their form
+    @Serial
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("firstWithdrawalFree", boolean.class)
+    };
 
     /**
      * Constructs a SavingsAccount with the specified account number.
@@ -19,71 +26,46 @@ public class SavingsAccount extends Account {
      * @param accountNumber the account number for the savings account
      */
     public SavingsAccount(int accountNumber) {
-        super(accountNumber); // Call to the parent class constructor
-        this.accountType = "Sparkonto"; // Set the account type to "Savings Account"
-        this.firstWithdrawalFree = true; // Allow the first withdrawal to be free
-        this.balance = 0; // Initialize balance to 0
+        this(accountNumber, AccountProducts.SAVINGS);
     }
 
     /**
-     * Returns the interest rate of the savings account in percentage.
+     * Constructs a SavingsAccount of the given product with the specified account number.
      *
-     * @return the interest rate as a percentage (2.4%)
+     * @param accountNumber the account number for the savings account
+     * @param product the product of the account
      */
-    public double getInterestRate() {
-        return INTEREST_RATE * 100; // Return interest rate in percentage for formatting
+    public SavingsAccount(int accountNumber, AccountProduct product) {
+        super(accountNumber, product); // Call to the parent class constructor
     }
 
     /**
-     * Withdraws a specified amount from the savings account.
-     * The withdrawal may incur a fee after the first free withdrawal.
+     * Writes the free withdrawal flag where older versions kept it.
      *
-     * @param amount the amount to withdraw
-     * @return true if the withdrawal is successful; false if the amount is invalid
-     *         or insufficient funds are available
+     * @param out the stream to write to
+     * @throws IOException if an I/O error occurs
      */
-    @Override
-    public boolean withdraw(double amount) {
-        if (amount <= 0) {
-            return false; // Reject invalid withdrawal amounts (0 or negative)
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        synchronized (this) {
+            fields.put("firstWithdrawalFree", firstWithdrawalFree);
         }
-
-        double totalWithdrawalAmount = amount; // Total amount to be withdrawn
-
-        // Check if there is a withdrawal fee to apply
-        if (!firstWithdrawalFree) {
-            totalWithdrawalAmount += amount * WITHDRAWAL_FEE_PERCENTAGE; // Apply fee if applicable
-        }
-
-        // Ensure there's enough balance to cover the withdrawal amount and any fees
-        if (totalWithdrawalAmount <= balance) {
-            balance -= totalWithdrawalAmount; // Deduct the total withdrawal amount from the balance
-
-            // Log the transaction for the total amount deducted
-            transactions.add(new Transaction("Withdrawal", -totalWithdrawalAmount, balance));
-
-            // Update the first withdrawal flag if it's the first withdrawal
-            if (firstWithdrawalFree) {
-                firstWithdrawalFree = false; // Subsequent withdrawals incur fees
-            }
-
-            return true; // Withdrawal successful
-        }
-
-        return false; // Not enough funds to withdraw
+        out.writeFields();
     }
 
     /**
-     * Closes the savings account, adding accrued interest to the balance.
+     * Reads the free withdrawal flag that older versions kept in this class.
      *
-     * @return the final balance including interest earned
+     * @param in the stream to read from
+     * @throws IOException if an I/O error occurs
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found
      */
-    @Override
-    public double closeAccount() {
-        double interest = balance * INTEREST_RATE; // Calculate interest based on current balance
-        // Print account closure details
-        System.out.printf("Savings Account closed. Balance: %.2f SEK, Interest: %.2f SEK\n", balance, interest);
-        balance += interest; // Add interest when closing the account
-        return balance; // Return the final balance including interest
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        if (!fields.defaulted("firstWithdrawalFree")) {
+            firstWithdrawalFree = fields.get("firstWithdrawalFree", true);
+        }
     }
 }
@@ -0,0 +1,168 @@
+package sebron4;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.RoundingMode;
+
+/**
+ * Writes amounts and interest rates as text straight into a StringBuilder or other
+ * Appendable, digit by digit from the fixed-point value, without creating any objects.
+ * Amounts come out exactly as {@link SekFormat#format(long)} writes them, that is as the
+ * Swedish currency format does:
+ * <ul>
+ *     <li>digits grouped in threes with a no-break space (U+00A0),</li>
+ *     <li>a decimal comma and always two decimals,</li>
+ *     <li>a minus sign (U+2212) in front of negative amounts,</li>
+ *     <li>a no-break space and "kr" after the amount, for example "−5 790,00 kr".</li>
+ * </ul>
+ * Rates come out as account listings show them, for example "2,4 %" or "5 %".
+ * @author Sebastian Rone, sebron-4
+ */
+public final class SekEncoder {
+    /** Separator between groups of digits and before the currency, as used by the Swedish format. */
+    public static final char GROUPING_SEPARATOR = '\u00a0';
+    /** Sign in front of negative amounts, as used by the Swedish format. */
+    public static final char MINUS_SIGN = '\u2212';
+    private static final long[] POWERS_OF_TEN = new long[19]; // 10^0 to 10^18
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private SekEncoder() {
+    }
+
+    /**
+     * Appends an amount in Swedish kronor.
+     *
+     * @param out the builder to append to
+     * @param ore the amount in öre
+     * @return the builder
+     */
+    public static StringBuilder appendAmount(StringBuilder out, long ore) {
+        try {
+            appendAmount((Appendable) out, ore);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder does not throw
+        }
+        return out;
+    }
+
+    /**
+     * Appends an amount in Swedish kronor.
+     *
+     * @param out the Appendable to append to
+     * @param ore the amount in öre
+     * @throws IOException if the Appendable fails
+     */
+    public static void appendAmount(Appendable out, long ore) throws IOException {
+        // Work with the negated amount, which also holds Long.MIN_VALUE
+        long negative = ore < 0 ? ore : -ore;
+        if (ore < 0) {
+            out.append(MINUS_SIGN);
+        }
+        appendGroupedDigits(out, negative / 100);
+        long cents = -(negative % 100);
+        out.append(',').append((char) ('0' + cents / 10)).append((char) ('0' + cents % 10));
+        out.append(GROUPING_SEPARATOR).append('k').append('r');
+    }
+
+    /**
+     * Formats an interest rate as a percentage, see {@link #appendRate(StringBuilder, long)}.
+     * Products format their rates once with this; it is also the path for any other rate.
+     *
+     * @param basisPoints the rate in basis points
+     * @return the rate label, for example "2,4 %"
+     */
+    public static String rateLabel(long basisPoints) {
+        return appendRate(new StringBuilder(8), basisPoints).toString();
+    }
+
+    /**
+     * Appends an interest rate as a percentage with one decimal, rounded half up, for example
+     * "2,4 %" for 240 basis points or "1,3 %" for 125. A rate of 5 % is written "5 %", as
+     * account listings have always shown it.
+     *
+     * @param out the builder to append to
+     * @param basisPoints the rate in basis points
+     * @return the builder
+     */
+    public static StringBuilder appendRate(StringBuilder out, long basisPoints) {
+        try {
+            appendRate((Appendable) out, basisPoints);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder does not throw
+        }
+        return out;
+    }
+
+    /**
+     * Appends an interest rate as a percentage, see {@link #appendRate(StringBuilder, long)}.
+     *
+     * @param out the Appendable to append to
+     * @param basisPoints the rate in basis points
+     * @throws IOException if the Appendable fails
+     */
+    public static void appendRate(Appendable out, long basisPoints) throws IOException {
+        long magnitude = Math.absExact(basisPoints);
+        if (basisPoints < 0) {
+            out.append('-');
+        }
+        if (magnitude == 500) {
+            out.append('5'); // The credit rate is shown without decimals
+        } else {
+            long tenths = Money.divide(magnitude, 10, RoundingMode.HALF_UP); // Tenths of a percent
+            appendDigits(out, tenths / 10);
+            out.append(',').append((char) ('0' + tenths % 10));
+        }
+        out.append(' ').append('%');
+    }
+
+    /**
+     * Appends a whole number of kronor, grouping the digits in threes.
+     *
+     * @param out the Appendable to append to
+     * @param negative the number, negated so that it is zero or less
+     * @throws IOException if the Appendable fails
+     */
+    private static void appendGroupedDigits(Appendable out, long negative) throws IOException {
+        int digits = digitCount(negative);
+        for (int i = digits - 1; i >= 0; i--) {
+            out.append((char) ('0' - negative / POWERS_OF_TEN[i] % 10));
+            if (i > 0 && i % 3 == 0) {
+                out.append(GROUPING_SEPARATOR);
+            }
+        }
+    }
+
+    /**
+     * Appends a number that is zero or more without grouping.
+     *
+     * @param out the Appendable to append to
+     * @param value the number
+     * @throws IOException if the Appendable fails
+     */
+    private static void appendDigits(Appendable out, long value) throws IOException {
+        long negative = -value;
+        for (int i = digitCount(negative) - 1; i >= 0; i--) {
+            out.append((char) ('0' - negative / POWERS_OF_TEN[i] % 10));
+        }
+    }
+
+    /**
+     * Counts the decimal digits of a number.
+     *
+     * @param negative the number, negated so that it is zero or less
+     * @return the number of digits, 1 for zero
+     */
+    private static int digitCount(long negative) {
+        int digits = 1;
+        while (digits < POWERS_OF_TEN.length && negative <= -POWERS_OF_TEN[digits]) {
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,33 @@
+package sebron4;
+
+import java.text.NumberFormat;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Shared formatting of amounts in Swedish kronor and of transaction times. The Swedish
+ * currency format is built once; NumberFormat is not thread-safe, so each thread formats
+ * with its own copy of it. The output is exactly that of
+ * {@code NumberFormat.getCurrencyInstance(Locale.of("sv", "SE"))}, for example "5 790,00 kr".
+ * @author Sebastian Rone, sebron-4
+ */
+public final class SekFormat {
+    /** Format of transaction times in listings, for example "2024-09-12 10:53:44". DateTimeFormatter is immutable. */
+    public static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final NumberFormat PROTOTYPE = NumberFormat.getCurrencyInstance(Locale.of("sv", "SE")); // Only ever cloned, never used to format
+    private static final ThreadLocal<NumberFormat> CURRENCY = ThreadLocal.withInitial(() -> (NumberFormat) PROTOTYPE.clone()); // Per-thread copy
+
+    private SekFormat() {
+    }
+
+    /**
+     * Formats an amount as Swedish kronor.
+     *
+     * @param ore the amount in öre
+     * @return the formatted amount, for example "5 790,00 kr"
+     */
+    public static String format(long ore) {
+        return CURRENCY.get().format(Money.toBigDecimal(ore));
+    }
+}
@@ -0,0 +1,301 @@
+package sebron4;
+
+import java.time.LocalDate;
+import java.time.Year;
+
+/**
+ * Converts Swedish social security numbers (personnummer) to a canonical long key: the
+ * twelve digits YYYYMMDDNNNC as a number. Every way of writing the same number gives the
+ * same key, so "8505221898", "850522-1898" and "198505221898" are one customer. The key is
+ * what Customer and the BankLogic indexes store and compare, so lookups hash and compare a
+ * primitive instead of a String. How a number is displayed is up to the caller; the key
+ * only identifies it.
+ *
+ * Accepted forms are 10 or 12 digits, optionally with a '-' or '+' before the last four
+ * digits. A 10-digit number gets its century from the date it is parsed on: the birth date
+ * is taken as the latest one not in the future, and a '+' adds another hundred years, as for
+ * people aged 100 or more. The century is resolved once, when the customer is created, and
+ * the customer keeps that key; it is saved in the 12-digit form, so it does not change when
+ * the bank is loaded again. A 10-digit number parsed later may resolve to the next century
+ * once its date has passed, so lookups by a 10-digit number, and the check for an existing
+ * customer when one is created, also try {@link #previousCentury(long)}.
+ *
+ * The key does not record how the number was written. {@link #formOf(String)} returns that
+ * as a {@link Form}, and {@link #format(long, Form)} writes the key back in it, so a number is
+ * shown as it was entered.
+ *
+ * {@link #parse(String)} only checks the form, which is what the bank requires.
+ * {@link #isValid(long)} also checks the birth date (coordination numbers, with 60 added to
+ * the day, are accepted) and the check digit, for callers that want strict validation.
+ * @author Sebastian Rone, sebron-4
+ */
+public final class SocialSecurityNumber {
+    /** Returned by {@link #parse(String)} for text that is not a social security number. */
+    public static final long INVALID = -1L;
+
+    private static final int COORDINATION_DAY_OFFSET = 60; // Added to the day in coordination numbers (samordningsnummer)
+    private static final long CENTURY = 100L * 100_000_000; // A hundred years in the YYYY digits of a key
+
+    /**
+     * How a social security number is written: with 10 or 12 digits, and with a '-', a '+' or
+     * nothing before the last four digits.
+     */
+    public enum Form {
+        TEN_DIGITS(10, '\0'),
+        TEN_DIGITS_DASH(10, '-'),
+        TEN_DIGITS_PLUS(10, '+'),
+        TWELVE_DIGITS(12, '\0'),
+        TWELVE_DIGITS_DASH(12, '-'),
+        TWELVE_DIGITS_PLUS(12, '+');
+
+        private final int digits; // Number of digits written
+        private final char separator; // Character before the last four digits, or '\0' for none
+
+        Form(int digits, char separator) {
+            this.digits = digits;
+            this.separator = separator;
+        }
+    }
+
+    private SocialSecurityNumber() {
+    }
+
+    /**
+     * Parses a social security number into its canonical key, taking the century of a 10-digit
+     * number from today's date.
+     *
+     * @param text the social security number as entered
+     * @return the key, or {@link #INVALID} if the text does not have the form of a social security number
+     */
+    public static long parse(String text) {
+        return parse(text, LocalDate.now());
+    }
+
+    /**
+     * Parses a social security number into its canonical key.
+     *
+     * @param text the social security number as entered
+     * @param today the date that decides the century of a 10-digit number
+     * @return the key, or {@link #INVALID} if the text does not have the form of a social security number
+     */
+    public static long parse(String text, LocalDate today) {
+        if (text == null) {
+            return INVALID;
+        }
+        int length = text.length();
+        char separator = 0;
+        int digitCount = length;
+        if (length == 11 || length == 13) {
+            separator = text.charAt(length - 5);
+            if (separator != '-' && separator != '+') {
+                return INVALID; // Wrong character where the separator belongs
+            }
+            digitCount--;
+        }
+        if (digitCount != 10 && digitCount != 12) {
+            return INVALID;
+        }
+        long digits = 0;
+        for (int i = 0; i < length; i++) {
+            if (separator != 0 && i == length - 5) {
+                continue; // Skip the separator
+            }
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return INVALID;
+            }
+            digits = digits * 10 + (c - '0');
+        }
+        if (digitCount == 12) {
+            return digits;
+        }
+
+        // Add the century: the latest birth date that is not after today, a hundred years earlier for '+'
+        int monthDay = (int) (digits / 10_000 % 10_000); // MMDD
+        int day = monthDay % 100;
+        if (day > COORDINATION_DAY_OFFSET) {
+            monthDay -= COORDINATION_DAY_OFFSET;
+        }
+        int year = today.getYear() / 100 * 100 + (int) (digits / 100_000_000);
+        if (year * 10_000 + monthDay > today.getYear() * 10_000 + today.getMonthValue() * 100 + today.getDayOfMonth()) {
+            year -= 100;
+        }
+        if (separator == '+') {
+            year -= 100;
+        }
+        return year / 100 * CENTURY + digits;
+    }
+
+    /**
+     * Finds how a social security number is written, see {@link #format(long, Form)}.
+     *
+     * @param text the social security number as entered, which must have one of the accepted forms
+     * @return the form, or null if the text does not have one
+     */
+    public static Form formOf(String text) {
+        if (parse(text) == INVALID) {
+            return null;
+        }
+        int length = text.length();
+        boolean separated = length == 11 || length == 13;
+        char separator = separated ? text.charAt(length - 5) : '\0';
+        int digits = separated ? length - 1 : length;
+        for (Form form : Form.values()) {
+            if (form.digits == digits && form.separator == separator) {
+                return form;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether text is written without the century, so that its key depends on the date
+     * it is parsed on.
+     *
+     * @param text the social security number as entered
+     * @return true if the text has 10 digits
+     */
+    public static boolean isWithoutCentury(String text) {
+        return text != null && (text.length() == 10 || text.length() == 11);
+    }
+
+    /**
+     * Returns the key of the same number a hundred years earlier, which is what a 10-digit
+     * number parsed today resolved to when its birth date was still in the future.
+     *
+     * @param key the key
+     * @return the key a century earlier, or {@link #INVALID} if there is none
+     */
+    public static long previousCentury(long key) {
+        long earlier = key - CENTURY;
+        return earlier >= 0 ? earlier : INVALID;
+    }
+
+    /**
+     * Builds the key of a valid social security number from a birth date and a birth number,
+     * computing the check digit.
+     *
+     * @param birthDate the birth date
+     * @param birthNumber the three-digit birth number, 0 to 999
+     * @return the key
+     */
+    public static long of(LocalDate birthDate, int birthNumber) {
+        if (birthNumber < 0 || birthNumber > 999 || birthDate.getYear() < 1000 || birthDate.getYear() > 9999) {
+            throw new IllegalArgumentException("Birth date or birth number out of range");
+        }
+        long withoutCheck = ((birthDate.getYear() * 100L + birthDate.getMonthValue()) * 100 + birthDate.getDayOfMonth()) * 1000 + birthNumber;
+        return withoutCheck * 10 + checkDigit(withoutCheck);
+    }
+
+    /**
+     * Checks whether a key is a valid social security number: it has a real birth date, or a
+     * coordination number's date, and a correct check digit.
+     *
+     * @param key the key to check
+     * @return true if the key is a valid social security number
+     */
+    public static boolean isValid(long key) {
+        if (key < 1_000_00_00_0000L || key > 9999_99_99_9999L) {
+            return false; // INVALID, or not twelve digits
+        }
+        int year = (int) (key / 100_000_000);
+        int month = (int) (key / 1_000_000 % 100);
+        int day = (int) (key / 10_000 % 100);
+        if (day > COORDINATION_DAY_OFFSET) {
+            day -= COORDINATION_DAY_OFFSET;
+        }
+        if (month < 1 || month > 12 || day < 1 || day > monthLength(year, month)) {
+            return false;
+        }
+        return key % 10 == checkDigit(key / 10);
+    }
+
+    /**
+     * Formats a key as "YYYYMMDD-NNNC".
+     *
+     * @param key the key
+     * @return the social security number as text
+     */
+    public static String format(long key) {
+        if (key == INVALID) {
+            throw new IllegalArgumentException("Not a social security number key");
+        }
+        String digits = String.format("%012d", key);
+        return digits.substring(0, 8) + '-' + digits.substring(8);
+    }
+
+    /**
+     * Formats a key in the given form, for example "8505221898" or "850522-1898". A 10-digit
+     * form leaves out the century.
+     *
+     * @param key the key
+     * @param form how to write the number
+     * @return the social security number as text
+     */
+    public static String format(long key, Form form) {
+        String canonical = format(key); // YYYYMMDD-NNNC
+        StringBuilder text = new StringBuilder(13);
+        text.append(canonical, 12 - form.digits, 8);
+        if (form.separator != '\0') {
+            text.append(form.separator);
+        }
+        return text.append(canonical, 9, 13).toString();
+    }
+
+    /**
+     * Spreads a key over a hash table.
+     *
+     * @param key the key
+     * @return the mixed hash
+     */
+    public static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L; // Fibonacci hashing
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Computes the check digit with the Luhn algorithm over the ten-digit form YYMMDDNNN.
+     *
+     * @param withoutCheck the first eleven digits of the key, YYYYMMDDNNN
+     * @return the check digit
+     */
+    private static int checkDigit(long withoutCheck) {
+        long digits = withoutCheck % 1_000_000_000L; // YYMMDDNNN
+        int sum = 0;
+        boolean twice = true; // The last of the nine digits is doubled
+        for (int i = 0; i < 9; i++) {
+            int digit = (int) (digits % 10);
+            digits /= 10;
+            if (twice) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            twice = !twice;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    /**
+     * Returns the number of days in a month.
+     *
+     * @param year the year
+     * @param month the month, 1 to 12
+     * @return the number of days
+     */
+    private static int monthLength(int year, int month) {
+        switch (month) {
+            case 2:
+                return Year.isLeap(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package sebron4;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Writes statements for many accounts at once, one file per account, for example every
+ * account at month end. The accounts are shared out between a pool of worker threads, which
+ * claim them a few at a time so that a worker that gets accounts with long histories does
+ * not hold up the others. Each worker streams its statements with its own
+ * {@link StatementWriter} straight into a file channel.
+ *
+ * A statement is first written to a temporary file, forced to disk and then moved to its
+ * final name, so a statement file is either complete or missing. If the batch is stopped or
+ * the program crashes, running the batch again skips the statements that already exist and
+ * writes only the rest.
+ * @author Sebastian Rone, sebron-4
+ */
+public class StatementBatch {
+    private static final int ACCOUNTS_PER_CLAIM = 16; // Accounts a worker takes at a time
+    private static final String STATEMENT_PREFIX = "account-"; // Statement file names are the prefix, the account number and the suffix
+    private static final String STATEMENT_SUFFIX = ".txt";
+    private static final String TEMPORARY_SUFFIX = ".tmp"; // Added to statements being written
+
+    private final List<Account> accounts; // Accounts to write statements for
+    private final Path directory; // Directory the statement files are written to
+    private final LocalDateTime from; // Start of the statement period, or null
+    private final LocalDateTime to; // End of the statement period, or null
+    private final int threads; // Number of worker threads
+
+    private final AtomicInteger next = new AtomicInteger(); // Index of the next account to claim
+    private final AtomicInteger written = new AtomicInteger(); // Statements written by this run
+    private final AtomicInteger skipped = new AtomicInteger(); // Statements that already existed
+    private final AtomicLong transactions = new AtomicLong(); // Transactions in the written statements
+    private final Queue<Integer> failed = new ConcurrentLinkedQueue<>(); // Accounts whose statements failed
+    private volatile long startNanos; // When the batch started
+
+    /**
+     * Constructs a batch. The list of accounts is copied, so accounts opened or closed later
+     * do not change the batch.
+     *
+     * @param accounts the accounts to write statements for
+     * @param directory the directory to write the statement files to
+     * @param from the earliest time to include, or null to start at the first transaction
+     * @param to the time to stop before, or null to continue to the last transaction
+     * @param threads the number of worker threads
+     */
+    public StatementBatch(List<Account> accounts, Path directory, LocalDateTime from, LocalDateTime to, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        this.accounts = new ArrayList<>(accounts);
+        this.directory = directory;
+        this.from = from;
+        this.to = to;
+        this.threads = threads;
+    }
+
+    /**
+     * Gets the directory the statement files are written to.
+     *
+     * @return the directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the file the statement of an account is written to.
+     *
+     * @param accountNumber the account number
+     * @return the statement file
+     */
+    public Path statementFile(int accountNumber) {
+        return directory.resolve(STATEMENT_PREFIX + accountNumber + STATEMENT_SUFFIX);
+    }
+
+    /**
+     * Writes the statements and waits until all of them are done. The listener is called on
+     * the calling thread at the given interval while the batch runs, and once more at the end.
+     * Statements that fail are reported in the progress and left for the next run. A batch
+     * can only be run once; create a new one to run again.
+     *
+     * @param listener receives the progress, or null
+     * @param intervalMillis the time between progress reports, in milliseconds (must be greater than 0)
+     * @return the final progress
+     * @throws IOException if the directory cannot be created or cleaned
+     * @throws InterruptedException if the calling thread is interrupted; the workers are stopped
+     * @throws IllegalArgumentException if the interval is not greater than 0
+     * @throws IllegalStateException if the batch has already been run
+     */
+    public synchronized StatementBatchProgress run(Consumer<StatementBatchProgress> listener, long intervalMillis) throws IOException, InterruptedException {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("intervalMillis must be greater than 0");
+        }
+        if (startNanos != 0) {
+            throw new IllegalStateException("The batch has already been run");
+        }
+        Files.createDirectories(directory);
+        deleteTemporaryFiles(); // Left behind by a run that crashed
+
+        startNanos = System.nanoTime();
+        int workers = Math.max(1, Math.min(threads, (accounts.size() + ACCOUNTS_PER_CLAIM - 1) / ACCOUNTS_PER_CLAIM));
+        ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "statement-batch");
+            thread.setDaemon(true); // Do not keep the application alive
+            return thread;
+        });
+        try {
+            for (int i = 0; i < workers; i++) {
+                pool.execute(this::work);
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(intervalMillis, TimeUnit.MILLISECONDS)) {
+                if (listener != null) {
+                    listener.accept(getProgress());
+                }
+            }
+        } finally {
+            pool.shutdownNow(); // Stops the workers if this thread was interrupted
+        }
+
+        StatementBatchProgress progress = getProgress();
+        if (listener != null) {
+            listener.accept(progress);
+        }
+        return progress;
+    }
+
+    /**
+     * Gets the progress of the batch so far. This can be called from any thread.
+     *
+     * @return a snapshot of the progress
+     */
+    public StatementBatchProgress getProgress() {
+        long elapsedMillis = startNanos == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        return new StatementBatchProgress(accounts.size(), written.get(), skipped.get(), new ArrayList<>(failed),
+                transactions.get(), elapsedMillis);
+    }
+
+    /**
+     * Claims accounts and writes their statements until there are none left. Runs on a worker thread.
+     */
+    private void work() {
+        StatementWriter statements = new StatementWriter(); // One per worker, it is not thread-safe
+        int start;
+        while ((start = next.getAndAdd(ACCOUNTS_PER_CLAIM)) < accounts.size()) {
+            int end = Math.min(start + ACCOUNTS_PER_CLAIM, accounts.size());
+            for (int i = start; i < end; i++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                Account account = accounts.get(i);
+                try {
+                    writeStatement(statements, account);
+                } catch (IOException | RuntimeException e) {
+                    failed.add(account.getAccountNumber());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the statement of one account unless it already exists.
+     *
+     * @param statements the statement writer of this worker
+     * @param account the account
+     * @throws IOException if the statement cannot be written
+     */
+    private void writeStatement(StatementWriter statements, Account account) throws IOException {
+        Path target = statementFile(account.getAccountNumber());
+        if (Files.exists(target)) {
+            skipped.incrementAndGet(); // Written by an earlier run
+            return;
+        }
+        Path temporary = target.resolveSibling(target.getFileName() + TEMPORARY_SUFFIX);
+        try {
+            int count;
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                count = statements.write(account, from, to, channel);
+                channel.force(false); // On disk before it gets its final name
+            }
+            try {
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            written.incrementAndGet();
+            transactions.addAndGet(count);
+        } finally {
+            Files.deleteIfExists(temporary); // Only still there if something failed
+        }
+    }
+
+    /**
+     * Deletes statements that an earlier run did not finish writing. Only temporary statement
+     * files are deleted; other files in the directory are left alone.
+     *
+     * @throws IOException if the directory cannot be read or a file cannot be deleted
+     */
+    private void deleteTemporaryFiles() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                STATEMENT_PREFIX + "*" + STATEMENT_SUFFIX + TEMPORARY_SUFFIX)) {
+            for (Path file : files) {
+                if (isTemporaryStatement(file.getFileName().toString())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether a file name is that of a statement being written, "account-&lt;number&gt;.txt.tmp".
+     *
+     * @param name the file name
+     * @return true if the name is the prefix, an account number and the suffixes
+     */
+    private static boolean isTemporaryStatement(String name) {
+        if (!name.startsWith(STATEMENT_PREFIX) || !name.endsWith(STATEMENT_SUFFIX + TEMPORARY_SUFFIX)) {
+            return false;
+        }
+        int start = STATEMENT_PREFIX.length();
+        int end = name.length() - STATEMENT_SUFFIX.length() - TEMPORARY_SUFFIX.length();
+        if (end <= start) {
+            return false; // No account number
+        }
+        for (int i = start; i < end; i++) {
+            if (name.charAt(i) < '0' || name.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,130 @@
+package sebron4;
+
+import java.util.List;
+
+/**
+ * How far a {@link StatementBatch} has come: how many statements have been written, skipped
+ * because they were already written by an earlier run, or failed, and how fast the batch is
+ * going. A progress object is a snapshot and does not change.
+ * @author Sebastian Rone, sebron-4
+ */
+public class StatementBatchProgress {
+    private final int total; // Number of accounts in the batch
+    private final int written; // Statements written by this run
+    private final int skipped; // Statements already written by an earlier run
+    private final List<Integer> failed; // Account numbers whose statements could not be written
+    private final long transactions; // Transactions in the statements written by this run
+    private final long elapsedMillis; // Time since the batch started
+
+    /**
+     * Constructs a snapshot.
+     *
+     * @param total the number of accounts in the batch
+     * @param written the number of statements written by this run
+     * @param skipped the number of statements already written by an earlier run
+     * @param failed the account numbers whose statements could not be written
+     * @param transactions the number of transactions in the written statements
+     * @param elapsedMillis the time since the batch started, in milliseconds
+     */
+    public StatementBatchProgress(int total, int written, int skipped, List<Integer> failed, long transactions, long elapsedMillis) {
+        this.total = total;
+        this.written = written;
+        this.skipped = skipped;
+        this.failed = failed;
+        this.transactions = transactions;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Gets the number of accounts in the batch.
+     *
+     * @return the number of accounts
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the number of statements written by this run.
+     *
+     * @return the number of statements written
+     */
+    public int getWritten() {
+        return written;
+    }
+
+    /**
+     * Gets the number of statements that already existed from an earlier run and were skipped.
+     *
+     * @return the number of statements skipped
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Gets the account numbers whose statements could not be written. Running the batch
+     * again retries them.
+     *
+     * @return the failed account numbers
+     */
+    public List<Integer> getFailed() {
+        return failed;
+    }
+
+    /**
+     * Gets the number of accounts that have been handled, whichever way.
+     *
+     * @return the number of accounts done
+     */
+    public int getDone() {
+        return written + skipped + failed.size();
+    }
+
+    /**
+     * Gets the number of transactions in the statements written by this run.
+     *
+     * @return the number of transactions
+     */
+    public long getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * Gets the time since the batch started.
+     *
+     * @return the elapsed time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Gets the number of statements written per second by this run.
+     *
+     * @return the statements per second
+     */
+    public double getStatementsPerSecond() {
+        return elapsedMillis == 0 ? 0 : written * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * Gets the number of transactions written per second by this run.
+     *
+     * @return the transactions per second
+     */
+    public double getTransactionsPerSecond() {
+        return elapsedMillis == 0 ? 0 : transactions * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * Returns the progress as one line of text.
+     *
+     * @return the progress, for example "120/500 kontoutdrag (100 skrivna, 20 fanns redan, 0 misslyckades), 350 per sekund"
+     */
+    @Override
+    public String toString() {
+        return String.format("%d/%d kontoutdrag (%d skrivna, %d fanns redan, %d misslyckades), %.0f per sekund, %.0f transaktioner per sekund",
+                getDone(), total, written, skipped, failed.size(), getStatementsPerSecond(), getTransactionsPerSecond());
+    }
+}
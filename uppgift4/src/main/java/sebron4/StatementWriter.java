@@ -0,0 +1,264 @@
+package sebron4;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ConcurrentModificationException;
+
+/**
+ * Writes account statements: a header, the account details and every transaction in a time
+ * range, followed by the opening and closing balance. Each transaction is encoded straight
+ * from the transaction log into a fixed-size buffer that is flushed to the output whenever it
+ * fills up, so a statement uses the same small amount of memory however long the history is.
+ * Statements can be written to a Writer or, encoded as UTF-8, to a WritableByteChannel.
+ *
+ * The transaction logs are not thread-safe, so transactions are copied out of the log under
+ * the account lock, a bounded number at a time, and formatted after the lock is released.
+ * Deposits and withdrawals therefore wait at most for one chunk to be copied, never for the
+ * output. If the history of the account is compacted while its statement is being written,
+ * the positions in the log no longer hold, and the statement fails instead.
+ *
+ * A statement writer reuses its buffers and is not thread-safe; use one per thread.
+ * @author Sebastian Rone, sebron-4
+ */
+public class StatementWriter {
+    private static final int BUFFER_SIZE = 8192; // Characters collected before they are written out
+    private static final int MAX_LINE = 128; // Room kept free for one transaction line
+    private static final int ROWS_PER_LOCK = 256; // Transactions copied while holding the account lock
+
+    private final StringBuilder text = new StringBuilder(BUFFER_SIZE); // Text not written out yet
+    private final char[] chars = new char[BUFFER_SIZE]; // Copy of the text handed to the output
+    private final long[] timestamps = new long[ROWS_PER_LOCK]; // Chunk of transactions copied from the log
+    private final long[] amounts = new long[ROWS_PER_LOCK];
+    private final long[] balances = new long[ROWS_PER_LOCK];
+    private final DateTimeEncoder dates = new DateTimeEncoder();
+    private CharsetEncoder encoder; // Created on first use for channels
+    private ByteBuffer bytes; // Encoded text for channels
+    private Writer writer; // Output of the statement being written, or null for a channel
+    private WritableByteChannel channel; // Output of the statement being written, or null for a writer
+
+    /**
+     * Writes a statement to a Writer. The writer is flushed but not closed.
+     *
+     * @param account the account
+     * @param from    the earliest time to include, or null to start at the first transaction
+     * @param to      the time to stop before, or null to continue to the last transaction
+     * @param out     the writer
+     * @return the number of transactions written
+     * @throws IOException if writing fails
+     * @throws ConcurrentModificationException if the history of the account is compacted meanwhile
+     * @throws IllegalArgumentException if the range starts between two transactions of a compacted day
+     */
+    public int write(Account account, LocalDateTime from, LocalDateTime to, Writer out) throws IOException {
+        writer = out;
+        try {
+            int count = writeStatement(account, from, to);
+            out.flush();
+            return count;
+        } finally {
+            writer = null;
+            text.setLength(0);
+        }
+    }
+
+    /**
+     * Writes a statement to a channel, encoded as UTF-8. The channel is not closed.
+     *
+     * @param account the account
+     * @param from    the earliest time to include, or null to start at the first transaction
+     * @param to      the time to stop before, or null to continue to the last transaction
+     * @param out     the channel
+     * @return the number of transactions written
+     * @throws IOException if writing fails
+     * @throws ConcurrentModificationException if the history of the account is compacted meanwhile
+     * @throws IllegalArgumentException if the range starts between two transactions of a compacted day
+     */
+    public int write(Account account, LocalDateTime from, LocalDateTime to, WritableByteChannel out) throws IOException {
+        if (encoder == null) {
+            encoder = StandardCharsets.UTF_8.newEncoder();
+            bytes = ByteBuffer.allocate(BUFFER_SIZE * 2);
+        }
+        encoder.reset(); // In case an earlier statement failed half-way
+        bytes.clear();
+        channel = out;
+        try {
+            return writeStatement(account, from, to);
+        } finally {
+            channel = null;
+            text.setLength(0);
+        }
+    }
+
+    /**
+     * Writes the statement to the current output.
+     *
+     * @param account the account
+     * @param from    the earliest time to include, or null for no lower bound
+     * @param to      the time to stop before, or null for no upper bound
+     * @return the number of transactions written
+     * @throws IOException if writing fails
+     * @throws ConcurrentModificationException if the history of the account is compacted meanwhile
+     * @throws IllegalArgumentException if the range starts between two transactions of a compacted day
+     */
+    private int writeStatement(Account account, LocalDateTime from, LocalDateTime to) throws IOException {
+        // Fix the range, balances and header details under the account lock
+        TransactionLog transactions;
+        int start;
+        int end;
+        long openingOre;
+        long closingOre;
+        String details;
+        Customer owner;
+        synchronized (account) {
+            transactions = account.getTransactionLog();
+            start = from == null ? 0 : account.indexOfFirstTransactionAtOrAfter(from);
+            end = to == null ? transactions.size() : account.indexOfFirstTransactionAtOrAfter(to);
+            end = Math.max(start, end);
+            if (start > 0) {
+                openingOre = transactions.balanceAfterAt(start - 1);
+            } else if (from != null) {
+                openingOre = account.getBalanceOreAsOf(from.minusNanos(1)); // Balance before the range
+            } else if (transactions.size() > 0) {
+                openingOre = transactions.balanceAfterAt(0) - transactions.amountAt(0);
+            } else {
+                openingOre = account.getBalanceOre();
+            }
+            closingOre = end > start ? transactions.balanceAfterAt(end - 1) : openingOre;
+            details = account.getFormattedAccountDetails();
+            owner = account.getOwner();
+        }
+
+        // Header
+        text.append("Kontoutdrag - ").append(Transaction.toLocalDateTime(Account.getClock().millis()).toLocalDate()).append('\n');
+        if (owner != null) {
+            text.append(owner.getSocialSecurityNumber()).append(' ')
+                    .append(owner.getName()).append(' ').append(owner.getSirName()).append('\n');
+        }
+        text.append(details).append('\n');
+        text.append("Period: ");
+        if (from == null && to == null) {
+            text.append("Alla transaktioner");
+        } else {
+            if (from != null) {
+                dates.append(text, Transaction.toEpochMillis(from));
+            }
+            text.append(" - ");
+            if (to != null) {
+                dates.append(text, Transaction.toEpochMillis(to));
+            }
+        }
+        text.append('\n');
+        text.append("Ingående saldo: ");
+        SekEncoder.appendAmount(text, openingOre).append('\n');
+
+        // Transactions, in the same format as BankLogic.getTransactions
+        for (int chunk = start; chunk < end; chunk += ROWS_PER_LOCK) {
+            int rows = Math.min(ROWS_PER_LOCK, end - chunk);
+            copyRows(account, transactions, chunk, rows);
+            for (int i = 0; i < rows; i++) {
+                dates.append(text, timestamps[i]).append(' ');
+                SekEncoder.appendAmount(text, amounts[i]).append(" Saldo: ");
+                SekEncoder.appendAmount(text, balances[i]).append('\n');
+                if (text.length() > BUFFER_SIZE - MAX_LINE) {
+                    flush(false);
+                }
+            }
+        }
+
+        text.append("Utgående saldo: ");
+        SekEncoder.appendAmount(text, closingOre).append('\n');
+        text.append("Antal transaktioner: ").append(end - start).append('\n');
+        flush(true);
+        return end - start;
+    }
+
+    /**
+     * Copies a chunk of transactions out of the log under the account lock.
+     *
+     * @param account      the account
+     * @param transactions the log the statement range was fixed in
+     * @param first        the position of the first transaction to copy
+     * @param rows         the number of transactions to copy, at most {@link #ROWS_PER_LOCK}
+     * @throws ConcurrentModificationException if the account no longer uses the log
+     */
+    private void copyRows(Account account, TransactionLog transactions, int first, int rows) {
+        synchronized (account) {
+            if (account.getTransactionLog() != transactions) {
+                throw new ConcurrentModificationException("The history was compacted while the statement was written");
+            }
+            for (int i = 0; i < rows; i++) {
+                timestamps[i] = transactions.timestampAt(first + i);
+                amounts[i] = transactions.amountAt(first + i);
+                balances[i] = transactions.balanceAfterAt(first + i);
+            }
+        }
+    }
+
+    /**
+     * Writes the collected text to the current output and empties the buffer.
+     *
+     * @param last whether this is the end of the statement
+     * @throws IOException if writing fails
+     */
+    private void flush(boolean last) throws IOException {
+        int length = text.length();
+        int offset = 0;
+        while (offset < length) {
+            int n = Math.min(chars.length, length - offset); // The header can be longer than one buffer
+            if (offset + n < length && Character.isHighSurrogate(text.charAt(offset + n - 1))) {
+                n--; // Keep surrogate pairs together
+            }
+            text.getChars(offset, offset + n, chars, 0);
+            if (writer != null) {
+                writer.write(chars, 0, n);
+            } else {
+                encode(CharBuffer.wrap(chars, 0, n), last && offset + n == length);
+            }
+            offset += n;
+        }
+        text.setLength(0);
+    }
+
+    /**
+     * Encodes characters as UTF-8 and writes them to the channel.
+     *
+     * @param in   the characters
+     * @param last whether these are the last characters of the statement
+     * @throws IOException if encoding or writing fails
+     */
+    private void encode(CharBuffer in, boolean last) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(in, bytes, last);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (result.isUnderflow()) {
+                break;
+            }
+            drain(); // Overflow: the byte buffer is full
+        }
+        if (last) {
+            encoder.flush(bytes);
+        }
+        drain();
+    }
+
+    /**
+     * Writes all encoded bytes to the channel.
+     *
+     * @throws IOException if writing fails
+     */
+    private void drain() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+}
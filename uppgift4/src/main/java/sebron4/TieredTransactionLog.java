@@ -0,0 +1,310 @@
+package sebron4;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A transaction log that keeps only the most recent transactions in memory. When the
+ * in-memory tail is full, its older half is appended to a segment file for the account and
+ * dropped from memory. Reads of older transactions load the segment file one block at a
+ * time, in order, so a range query that reaches back into the history reads it sequentially
+ * and a query of recent transactions never touches the disk. Memory use per account is
+ * bounded by the tail capacity plus one block, however long the history gets.
+ *
+ * The segment file holds fixed-width records of {@value #RECORD_SIZE} bytes in the same
+ * layout as {@link OffHeapTransactionLog}. It only backs the log while the program runs (the
+ * bank file still holds the full history). The file is named after the account,
+ * "account-&lt;number&gt;.seg", is created at the first spill and is deleted by {@link #close()}.
+ * While a log is being replaced, the old and the new log of an account both exist for a
+ * moment, and the new one then takes the next free name, "account-&lt;number&gt;-2.seg" and so on.
+ * Files left behind when the program stops without closing its logs are removed with
+ * {@link #deleteSegments(File)} at the next start.
+ *
+ * The bound only holds while the bank runs. Saving and loading the bank file go through
+ * {@link Account}'s serialized form, a list of Transaction objects, so each account's whole
+ * history, spilled part included, is on the heap while that account is written or read.
+ * @author Sebastian Rone, sebron-4
+ */
+public class TieredTransactionLog implements TransactionLog {
+    /** Bytes per record in the segment file. */
+    public static final int RECORD_SIZE = 32;
+    private static final int TIMESTAMP_OFFSET = 0;
+    private static final int AMOUNT_OFFSET = 8;
+    private static final int BALANCE_AFTER_OFFSET = 16;
+    private static final int TYPE_OFFSET = 24;
+    private static final int BLOCK_RECORDS = 1024; // Records loaded from the segment file at a time
+    private static final String SEGMENT_PREFIX = "account-"; // Segment files are named account-<number>.seg
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final Set<File> SEGMENTS_IN_USE = ConcurrentHashMap.newKeySet(); // Segment files of logs that are not closed
+
+    private final File directory; // Directory for the segment file
+    private final int accountNumber; // Account the log belongs to, used in the segment file name
+    private File segmentFile; // Append-only file holding the spilled transactions, null until the first spill
+    private final int tailCapacity; // Maximum number of transactions kept in memory
+    private long[] tailTimestamps = {}; // Milliseconds since the epoch of the in-memory transactions, grown up to tailCapacity
+    private long[] tailAmounts = {}; // Amounts in öre
+    private long[] tailBalancesAfter = {}; // Balances after each transaction in öre
+    private byte[] tailTypes = {}; // TransactionType codes
+    private int spilled; // Number of transactions in the segment file, which come before the tail
+    private int size; // Total number of transactions
+    private ByteBuffer block; // Last block loaded from the segment file, or null
+    private int blockStart = -1; // Index of the first transaction in the loaded block
+    private int blockSize; // Number of transactions in the loaded block
+    private boolean closed; // Whether the log has been closed and its segment file deleted
+
+    /**
+     * Constructs an empty log spilling to a segment file in the given directory.
+     *
+     * @param directory the directory for segment files, created at the first spill if missing
+     * @param accountNumber the account the log belongs to
+     * @param tailCapacity the maximum number of transactions to keep in memory, at least 2
+     */
+    public TieredTransactionLog(File directory, int accountNumber, int tailCapacity) {
+        if (tailCapacity < 2) {
+            throw new IllegalArgumentException("tailCapacity must be at least 2");
+        }
+        this.directory = directory;
+        this.accountNumber = accountNumber;
+        this.tailCapacity = tailCapacity;
+    }
+
+    /**
+     * Deletes the segment files in a directory that no open log uses, left behind when the
+     * program stopped without closing its logs. Call it at start-up, before any log spills.
+     *
+     * @param directory the directory for segment files
+     * @return the number of files deleted
+     */
+    public static int deleteSegments(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        int deleted = 0;
+        if (files != null) {
+            for (File file : files) {
+                if (!SEGMENTS_IN_USE.contains(file.getAbsoluteFile()) && file.delete()) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public synchronized void append(long epochMillis, TransactionType type, long amountOre, long balanceAfterOre) {
+        checkOpen();
+        if (size - spilled == tailCapacity) {
+            spill(tailCapacity / 2); // Make room by moving the older half of the tail to disk
+        }
+        int slot = size - spilled;
+        if (slot == tailTimestamps.length) {
+            int capacity = Math.min(tailCapacity, Math.max(8, slot * 2)); // Grow the tail until it reaches its bound
+            tailTimestamps = Arrays.copyOf(tailTimestamps, capacity);
+            tailAmounts = Arrays.copyOf(tailAmounts, capacity);
+            tailBalancesAfter = Arrays.copyOf(tailBalancesAfter, capacity);
+            tailTypes = Arrays.copyOf(tailTypes, capacity);
+        }
+        tailTimestamps[slot] = epochMillis;
+        tailAmounts[slot] = amountOre;
+        tailBalancesAfter[slot] = balanceAfterOre;
+        tailTypes[slot] = type.code();
+        size++;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized long timestampAt(int index) {
+        return index >= spilled ? tailTimestamps[tailSlot(index)] : block(index).getLong(blockOffset(index) + TIMESTAMP_OFFSET);
+    }
+
+    @Override
+    public synchronized TransactionType typeAt(int index) {
+        byte code = index >= spilled ? tailTypes[tailSlot(index)] : block(index).get(blockOffset(index) + TYPE_OFFSET);
+        return TransactionType.ofCode(code);
+    }
+
+    @Override
+    public synchronized long amountAt(int index) {
+        return index >= spilled ? tailAmounts[tailSlot(index)] : block(index).getLong(blockOffset(index) + AMOUNT_OFFSET);
+    }
+
+    @Override
+    public synchronized long balanceAfterAt(int index) {
+        return index >= spilled ? tailBalancesAfter[tailSlot(index)] : block(index).getLong(blockOffset(index) + BALANCE_AFTER_OFFSET);
+    }
+
+    @Override
+    public synchronized int indexOfFirstAtOrAfter(long epochMillis) {
+        if (size > spilled && tailTimestamps[0] < epochMillis) {
+            // The answer lies in the tail, so search it without touching the disk
+            int low = 1; // tailTimestamps[0] is known to be earlier
+            int high = size - spilled;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (tailTimestamps[mid] < epochMillis) {
+                    low = mid + 1; // The first match lies after mid
+                } else {
+                    high = mid;
+                }
+            }
+            return spilled + low;
+        }
+        return TransactionLog.super.indexOfFirstAtOrAfter(epochMillis);
+    }
+
+    /**
+     * Deletes the segment file and drops the transactions kept in memory.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        tailTimestamps = new long[0];
+        tailAmounts = new long[0];
+        tailBalancesAfter = new long[0];
+        tailTypes = new byte[0];
+        block = null;
+        blockStart = -1;
+        if (segmentFile != null) {
+            segmentFile.delete();
+            SEGMENTS_IN_USE.remove(segmentFile);
+            segmentFile = null;
+        }
+    }
+
+    /**
+     * Returns the number of transactions that have been moved to the segment file.
+     *
+     * @return the number of spilled transactions
+     */
+    public synchronized int getSpilledCount() {
+        return spilled;
+    }
+
+    /**
+     * Appends the oldest transactions of the tail to the segment file and removes them from memory.
+     *
+     * @param count the number of transactions to move
+     */
+    private void spill(int count) {
+        ByteBuffer records = ByteBuffer.allocate(count * RECORD_SIZE);
+        for (int slot = 0; slot < count; slot++) {
+            int offset = slot * RECORD_SIZE;
+            records.putLong(offset + TIMESTAMP_OFFSET, tailTimestamps[slot]);
+            records.putLong(offset + AMOUNT_OFFSET, tailAmounts[slot]);
+            records.putLong(offset + BALANCE_AFTER_OFFSET, tailBalancesAfter[slot]);
+            records.put(offset + TYPE_OFFSET, tailTypes[slot]);
+        }
+        if (segmentFile == null) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new UncheckedIOException(new IOException("Could not create directory " + directory));
+            }
+            segmentFile = claimSegmentFile();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile, "rw")) {
+            if (spilled == 0) {
+                file.setLength(0); // Left over from a run that was not closed
+            }
+            file.seek((long) spilled * RECORD_SIZE);
+            file.write(records.array());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write " + segmentFile, e);
+        }
+        int remaining = size - spilled - count;
+        System.arraycopy(tailTimestamps, count, tailTimestamps, 0, remaining);
+        System.arraycopy(tailAmounts, count, tailAmounts, 0, remaining);
+        System.arraycopy(tailBalancesAfter, count, tailBalancesAfter, 0, remaining);
+        System.arraycopy(tailTypes, count, tailTypes, 0, remaining);
+        spilled += count;
+    }
+
+    /**
+     * Picks the segment file of this log: "account-&lt;number&gt;.seg", or the next free numbered
+     * name while another log of the same account still uses that one.
+     *
+     * @return the segment file, marked as in use
+     */
+    private File claimSegmentFile() {
+        File file = new File(directory, SEGMENT_PREFIX + accountNumber + SEGMENT_SUFFIX).getAbsoluteFile();
+        for (int n = 2; !SEGMENTS_IN_USE.add(file); n++) {
+            file = new File(directory, SEGMENT_PREFIX + accountNumber + "-" + n + SEGMENT_SUFFIX).getAbsoluteFile();
+        }
+        return file;
+    }
+
+    /**
+     * Returns the block of the segment file holding a spilled transaction, loading it if it is
+     * not the block already in memory.
+     *
+     * @param index the position of the transaction, which must be spilled
+     * @return the block
+     */
+    private ByteBuffer block(int index) {
+        checkOpen();
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (index < blockStart || index >= blockStart + blockSize) {
+            int start = index - index % BLOCK_RECORDS;
+            int count = Math.min(BLOCK_RECORDS, spilled - start);
+            if (block == null) {
+                block = ByteBuffer.allocate(BLOCK_RECORDS * RECORD_SIZE);
+            }
+            try (RandomAccessFile file = new RandomAccessFile(segmentFile, "r")) {
+                file.seek((long) start * RECORD_SIZE);
+                file.readFully(block.array(), 0, count * RECORD_SIZE);
+            } catch (IOException e) {
+                blockStart = -1;
+                throw new UncheckedIOException("Could not read " + segmentFile, e);
+            }
+            blockStart = start;
+            blockSize = count;
+        }
+        return block;
+    }
+
+    /**
+     * Finds the byte offset of a spilled transaction in the loaded block.
+     *
+     * @param index the position of the transaction
+     * @return the byte offset
+     */
+    private int blockOffset(int index) {
+        return (index - blockStart) * RECORD_SIZE;
+    }
+
+    /**
+     * Finds the tail slot of an in-memory transaction.
+     *
+     * @param index the position of the transaction, which must not be spilled
+     * @return the slot in the tail arrays
+     */
+    private int tailSlot(int index) {
+        checkOpen();
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return index - spilled;
+    }
+
+    /**
+     * Checks that the log has not been closed.
+     *
+     * @throws IllegalStateException if the log has been closed
+     */
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The transaction log has been closed");
+        }
+    }
+}
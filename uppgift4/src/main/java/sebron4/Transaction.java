@@ -1,64 +1,148 @@
 package sebron4;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamField;
 import java.io.Serial;
 import java.io.Serializable;
-import java.text.NumberFormat;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Locale;
+import java.time.ZoneId;
 
 /**
- * Represents a financial transaction associated with an account.
+ * Represents a financial transaction associated with an account. The kind of transaction is
+ * held as a one-byte type code and the time as milliseconds since the epoch, so a transaction
+ * is a single small object. Transactions written by older versions, with a text type and a
+ * LocalDateTime, are converted when they are read.
  * @author Sebastian Rone, sebron-4
  */
 public class Transaction implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
-    private String type; // Type of the transaction (e.g., "Withdraw", "Deposit")
-    private double amount; // Amount involved in the transaction
-    private double balanceAfter; // Account balance after the transaction
-    private LocalDateTime dateTime; // Date and time of the transaction
+    @Serial
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("typeCode", byte.class),
+            new ObjectStreamField("amountOre", long.class),
+            new ObjectStreamField("balanceAfterOre", long.class),
+            new ObjectStreamField("epochMillis", long.class)
+    };
+
+    private byte typeCode; // TransactionType code of the transaction
+    private long amountOre; // Amount involved in the transaction, in öre
+    private long balanceAfterOre; // Account balance after the transaction, in öre
+    private long epochMillis; // Date and time of the transaction, in milliseconds since the epoch
 
     /**
      * Constructs a Transaction object with the specified type, amount, and balance after the transaction.
-     * Automatically sets the current date and time of the transaction.
+     * Automatically sets the date and time of the transaction from the account clock.
      *
      * @param type The type of the transaction (e.g., "Withdraw", "Deposit").
-     * @param amount The amount involved in the transaction.
-     * @param balanceAfter The account balance after this transaction.
+     * @param amountOre The amount involved in the transaction, in öre.
+     * @param balanceAfterOre The account balance after this transaction, in öre.
+     * @throws IllegalArgumentException If the type is not a known transaction type.
+     */
+    public Transaction(String type, long amountOre, long balanceAfterOre) {
+        this(TransactionType.ofLabel(type), amountOre, balanceAfterOre, Account.getClock().millis());
+    }
+
+    /**
+     * Constructs a Transaction object that happened at the given time.
+     *
+     * @param type The type of the transaction.
+     * @param amountOre The amount involved in the transaction, in öre.
+     * @param balanceAfterOre The account balance after this transaction, in öre.
+     * @param epochMillis The time of the transaction, in milliseconds since the epoch.
+     */
+    public Transaction(TransactionType type, long amountOre, long balanceAfterOre, long epochMillis) {
+        this.typeCode = type.code(); // Initialize the transaction type
+        this.amountOre = amountOre; // Initialize the transaction amount
+        this.balanceAfterOre = balanceAfterOre; // Initialize the balance after the transaction
+        this.epochMillis = epochMillis; // Initialize the time of the transaction
+    }
+
+    /**
+     * Gets the kind of the transaction.
+     *
+     * @return The transaction type.
      */
-    public Transaction(String type, double amount, double balanceAfter) {
-        this.type = type; // Initialize the transaction type
-        this.amount = amount; // Initialize the transaction amount
-        this.balanceAfter = balanceAfter; // Initialize the balance after the transaction
-        this.dateTime = LocalDateTime.now(); // Automatically sets the current date and time
+    public TransactionType getType() {
+        return TransactionType.ofCode(typeCode); // Map the stored code to a type
     }
 
     /**
      * Gets the amount involved in the transaction.
      *
-     * @return The amount of the transaction.
+     * @return The amount of the transaction in kronor.
      */
     public double getAmount() {
-        return amount; // Return the transaction amount
+        return Money.toKronor(amountOre); // Return the transaction amount
+    }
+
+    /**
+     * Gets the amount involved in the transaction in öre.
+     *
+     * @return The amount of the transaction in öre.
+     */
+    public long getAmountOre() {
+        return amountOre; // Return the exact transaction amount
     }
 
     /**
      * Gets the balance after the transaction.
      *
-     * @return The account balance after this transaction.
+     * @return The account balance after this transaction, in kronor.
      */
     public double getBalanceAfter() {
-        return balanceAfter; // Return the balance after the transaction
+        return Money.toKronor(balanceAfterOre); // Return the balance after the transaction
+    }
+
+    /**
+     * Gets the balance after the transaction in öre.
+     *
+     * @return The account balance after this transaction, in öre.
+     */
+    public long getBalanceAfterOre() {
+        return balanceAfterOre; // Return the exact balance after the transaction
     }
 
     /**
-     * Gets the date and time when the transaction occurred.
+     * Gets the date and time when the transaction occurred, in the system time zone.
      *
      * @return The date and time of the transaction.
      */
     public LocalDateTime getDateTime() {
-        return dateTime; // Return the date and time of the transaction
+        return toLocalDateTime(epochMillis); // Created on demand from the timestamp
+    }
+
+    /**
+     * Gets the time when the transaction occurred.
+     *
+     * @return The time of the transaction, in milliseconds since the epoch.
+     */
+    public long getEpochMillis() {
+        return epochMillis; // Return the timestamp
+    }
+
+    /**
+     * Converts a date and time in the system time zone to milliseconds since the epoch, which
+     * is how transactions store timestamps. Anything below a millisecond is dropped.
+     *
+     * @param dateTime The date and time.
+     * @return The time in milliseconds since the epoch.
+     */
+    public static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Converts milliseconds since the epoch to a date and time in the system time zone.
+     *
+     * @param epochMillis The time in milliseconds since the epoch.
+     * @return The date and time.
+     */
+    public static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
     }
 
     /**
@@ -69,11 +153,44 @@ public class Transaction implements Serializable {
      */
     @Override
     public String toString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"); // Define the date format
-        String dateStr = dateTime.format(formatter); // Format the date and time
-        NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(new Locale("sv", "SE")); // Currency format for Swedish locale
-        String amountStr = currencyFormat.format(amount); // Format the transaction amount
-        String balanceStr = currencyFormat.format(balanceAfter); // Format the balance after the transaction
+        String dateStr = getDateTime().format(SekFormat.DATE_TIME); // Format the date and time
+        String amountStr = SekFormat.format(amountOre); // Format the transaction amount
+        String balanceStr = SekFormat.format(balanceAfterOre); // Format the balance after the transaction
         return String.format("%s %s Saldo: %s", dateStr, amountStr, balanceStr); // Return the formatted string
     }
+
+    /**
+     * Reads a transaction. Older versions wrote the type as text, the time as a LocalDateTime
+     * and, before that, the amounts as doubles; all of these are converted.
+     *
+     * @param in The stream to read from.
+     * @throws IOException If an I/O error occurs.
+     * @throws ClassNotFoundException If the class of a serialized object cannot be found.
+     */
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        if (fields.defaulted("epochMillis")) {
+            // Written before the compact form: text type and LocalDateTime
+            try {
+                typeCode = TransactionType.ofLabel((String) fields.get("type", null)).code();
+            } catch (IllegalArgumentException e) {
+                throw new InvalidObjectException(e.getMessage());
+            }
+            epochMillis = toEpochMillis((LocalDateTime) fields.get("dateTime", null));
+        } else {
+            typeCode = fields.get("typeCode", (byte) 0);
+            epochMillis = fields.get("epochMillis", 0L);
+            if (typeCode < 0 || typeCode >= TransactionType.values().length) {
+                throw new InvalidObjectException("Unknown transaction type code: " + typeCode);
+            }
+        }
+        if (fields.defaulted("amountOre")) {
+            amountOre = Money.ofKronor(fields.get("amount", 0.0)); // Written before amounts were fixed-point
+            balanceAfterOre = Money.ofKronor(fields.get("balanceAfter", 0.0));
+        } else {
+            amountOre = fields.get("amountOre", 0L);
+            balanceAfterOre = fields.get("balanceAfterOre", 0L);
+        }
+    }
 }
@@ -0,0 +1,97 @@
+package sebron4;
+
+/**
+ * Storage for the transaction history of one account. Transactions are only ever appended,
+ * in time order, and are read back by position. Implementations choose how the history is
+ * laid out in memory; {@link #get(int)} always rebuilds an equivalent {@link Transaction}.
+ * @author Sebastian Rone, sebron-4
+ */
+public interface TransactionLog {
+    /**
+     * Appends a transaction.
+     *
+     * @param epochMillis when the transaction happened, in milliseconds since the epoch
+     * @param type the kind of transaction
+     * @param amountOre the amount, negative for withdrawals, in öre
+     * @param balanceAfterOre the account balance after the transaction, in öre
+     */
+    void append(long epochMillis, TransactionType type, long amountOre, long balanceAfterOre);
+
+    /**
+     * Returns the number of transactions in the log.
+     *
+     * @return the number of transactions
+     */
+    int size();
+
+    /**
+     * Returns when a transaction happened.
+     *
+     * @param index the position of the transaction
+     * @return the time in milliseconds since the epoch
+     */
+    long timestampAt(int index);
+
+    /**
+     * Returns the kind of a transaction.
+     *
+     * @param index the position of the transaction
+     * @return the transaction type
+     */
+    TransactionType typeAt(int index);
+
+    /**
+     * Returns the amount of a transaction.
+     *
+     * @param index the position of the transaction
+     * @return the amount in öre
+     */
+    long amountAt(int index);
+
+    /**
+     * Returns the account balance after a transaction.
+     *
+     * @param index the position of the transaction
+     * @return the balance in öre
+     */
+    long balanceAfterAt(int index);
+
+    /**
+     * Releases what the log holds outside the heap, such as a segment file, once the log is no
+     * longer used, for example because the account was closed or its history compacted into a
+     * new log. The log must not be read or appended to afterwards. Logs kept in memory have
+     * nothing to release.
+     */
+    default void close() {
+    }
+
+    /**
+     * Returns a transaction as an object.
+     *
+     * @param index the position of the transaction
+     * @return the transaction
+     */
+    default Transaction get(int index) {
+        return new Transaction(typeAt(index), amountAt(index), balanceAfterAt(index), timestampAt(index));
+    }
+
+    /**
+     * Finds the first transaction that happened at or after the given time, by binary search.
+     *
+     * @param epochMillis the time in milliseconds since the epoch
+     * @return the position of the first such transaction, or {@link #size()} if there is none
+     */
+    default int indexOfFirstAtOrAfter(long epochMillis) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestampAt(mid) < epochMillis) {
+                low = mid + 1; // The first match lies after mid
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
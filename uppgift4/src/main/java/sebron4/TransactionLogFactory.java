@@ -0,0 +1,38 @@
+package sebron4;
+
+import java.io.File;
+
+/**
+ * Creates the transaction log of a new or freshly loaded account, which decides how its
+ * transaction history is stored. Set with {@link Account#setTransactionLogFactory(TransactionLogFactory)}.
+ * @author Sebastian Rone, sebron-4
+ */
+@FunctionalInterface
+public interface TransactionLogFactory {
+    /** Keeps one Transaction object per entry, as the bank always has. */
+    TransactionLogFactory HEAP = accountNumber -> new HeapTransactionLog();
+    /** Keeps the history in parallel primitive arrays, see {@link ColumnarTransactionLog}. */
+    TransactionLogFactory COLUMNAR = accountNumber -> new ColumnarTransactionLog();
+    /** Keeps the history outside the heap in direct buffers, see {@link OffHeapTransactionLog}. */
+    TransactionLogFactory OFF_HEAP = accountNumber -> new OffHeapTransactionLog();
+
+    /**
+     * Returns a factory for logs that keep at most the given number of recent transactions in
+     * memory and spill older ones to segment files, see {@link TieredTransactionLog}.
+     *
+     * @param directory the directory for the segment files
+     * @param tailCapacity the maximum number of transactions per account to keep in memory
+     * @return the factory
+     */
+    static TransactionLogFactory tiered(File directory, int tailCapacity) {
+        return accountNumber -> new TieredTransactionLog(directory, accountNumber, tailCapacity);
+    }
+
+    /**
+     * Creates an empty transaction log.
+     *
+     * @param accountNumber the account the log belongs to
+     * @return the new log
+     */
+    TransactionLog create(int accountNumber);
+}
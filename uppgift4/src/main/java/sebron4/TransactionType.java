@@ -0,0 +1,64 @@
+package sebron4;
+
+/**
+ * The kinds of transaction an account records. Stored as a one-byte code in compact
+ * transaction logs.
+ * @author Sebastian Rone, sebron-4
+ */
+public enum TransactionType {
+    DEPOSIT("Deposit"),
+    WITHDRAWAL("Withdrawal");
+
+    private static final TransactionType[] BY_CODE = values(); // Lookup table indexed by code
+
+    private final String label; // Text older versions stored as the transaction type
+
+    TransactionType(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Gets the text older versions stored for this type.
+     *
+     * @return the label, for example "Deposit"
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Gets the one-byte code stored in compact transaction logs.
+     *
+     * @return the code
+     */
+    public byte code() {
+        return (byte) ordinal();
+    }
+
+    /**
+     * Looks up a type by its one-byte code.
+     *
+     * @param code the code returned by {@link #code()}
+     * @return the type
+     */
+    public static TransactionType ofCode(byte code) {
+        return BY_CODE[code];
+    }
+
+    /**
+     * Maps the free-form type text of a Transaction to a type. Both "Withdraw" and
+     * "Withdrawal" have been used for withdrawals.
+     *
+     * @param label the type text
+     * @return the matching type
+     * @throws IllegalArgumentException if the text is not a known type
+     */
+    public static TransactionType ofLabel(String label) {
+        if ("Deposit".equals(label)) {
+            return DEPOSIT;
+        } else if ("Withdrawal".equals(label) || "Withdraw".equals(label)) {
+            return WITHDRAWAL;
+        }
+        throw new IllegalArgumentException("Unknown transaction type: " + label);
+    }
+}
@@ -0,0 +1,149 @@
+package sebron4;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests AccountMap, and with it the dense hash table it shares with CustomerMap, against a
+ * LinkedHashMap, which keeps the same insertion order.
+ * @author Sebastian Rone, sebron-4
+ */
+class AccountMapTest {
+    @Test
+    void behavesLikeALinkedHashMap() {
+        Random random = new Random(4);
+        for (int round = 0; round < 200; round++) {
+            AccountMap map = new AccountMap();
+            Map<Integer, Account> reference = new LinkedHashMap<>();
+            int range = 4 + random.nextInt(400); // Small ranges stay below the linear limit
+            for (int operation = 0; operation < 2_000; operation++) {
+                int accountNumber = 1001 + random.nextInt(range);
+                if (random.nextInt(3) == 0) {
+                    assertSame(reference.remove(accountNumber), map.remove(accountNumber));
+                } else {
+                    Account account = open(accountNumber);
+                    Account previous = reference.get(accountNumber);
+                    reference.put(accountNumber, account); // Replacing keeps the position, as in AccountMap
+                    assertSame(previous, map.put(account));
+                }
+                int probe = 1001 + random.nextInt(range);
+                assertSame(reference.get(probe), map.get(probe));
+                assertEquals(reference.containsKey(probe), map.containsKey(probe));
+                assertEquals(reference.size(), map.size());
+            }
+            assertSameOrder(reference, map);
+        }
+    }
+
+    @Test
+    void keepsTheOrderWhenHolesAreCompacted() {
+        AccountMap map = new AccountMap();
+        Map<Integer, Account> reference = new LinkedHashMap<>();
+        for (int accountNumber = 1001; accountNumber <= 1100; accountNumber++) {
+            Account account = open(accountNumber);
+            map.put(account);
+            reference.put(accountNumber, account);
+        }
+        for (int accountNumber = 1001; accountNumber <= 1100; accountNumber++) {
+            if (accountNumber % 5 != 0) {
+                map.remove(accountNumber); // Leaves holes until more than a quarter are holes
+                reference.remove(accountNumber);
+                assertSameOrder(reference, map);
+            }
+        }
+        assertEquals(20, map.size());
+        for (int accountNumber = 2001; accountNumber <= 2050; accountNumber++) {
+            Account account = open(accountNumber);
+            map.put(account); // Grows again after compaction
+            reference.put(accountNumber, account);
+        }
+        assertSameOrder(reference, map);
+        for (int accountNumber : reference.keySet()) {
+            assertSame(reference.get(accountNumber), map.get(accountNumber));
+        }
+    }
+
+    @Test
+    void readsPositionsPastHolesWithoutChangingTheMap() {
+        AccountMap map = new AccountMap();
+        for (int accountNumber = 1001; accountNumber <= 1020; accountNumber++) {
+            map.put(open(accountNumber));
+        }
+        map.remove(1002);
+        map.remove(1010);
+        List<Account> values = map.values();
+        assertEquals(18, values.size());
+        assertEquals(1001, values.get(0).getAccountNumber());
+        assertEquals(1003, values.get(1).getAccountNumber());
+        assertEquals(1011, values.get(8).getAccountNumber());
+        assertEquals(1020, values.get(17).getAccountNumber());
+        assertThrows(IndexOutOfBoundsException.class, () -> values.get(18));
+        assertThrows(IndexOutOfBoundsException.class, () -> values.get(-1));
+    }
+
+    @Test
+    void emptiesAndStartsAgain() {
+        AccountMap map = new AccountMap();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1001));
+        assertNull(map.remove(1001));
+        assertFalse(map.iterator().hasNext());
+        assertThrows(NoSuchElementException.class, () -> map.iterator().next());
+
+        for (int accountNumber = 1001; accountNumber <= 1050; accountNumber++) {
+            map.put(open(accountNumber));
+        }
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1025));
+        Account account = open(1025);
+        map.put(account);
+        assertSame(account, map.get(1025));
+        assertEquals(List.of(account), new ArrayList<>(map.values()));
+    }
+
+    /**
+     * Opens an account that is not part of any bank.
+     *
+     * @param accountNumber the account number
+     * @return the account
+     */
+    private static Account open(int accountNumber) {
+        return AccountProducts.SAVINGS.open(accountNumber);
+    }
+
+    /**
+     * Checks that the map holds the same accounts as the reference, in the same order, through
+     * its iterator and through positional access on its list view.
+     *
+     * @param reference the expected accounts
+     * @param map the map
+     */
+    private static void assertSameOrder(Map<Integer, Account> reference, AccountMap map) {
+        List<Account> expected = new ArrayList<>(reference.values());
+        List<Account> iterated = new ArrayList<>();
+        for (Iterator<Account> iterator = map.iterator(); iterator.hasNext(); ) {
+            iterated.add(iterator.next());
+        }
+        assertEquals(expected, iterated);
+        List<Account> values = map.values();
+        assertEquals(expected.size(), values.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), values.get(i));
+        }
+    }
+}
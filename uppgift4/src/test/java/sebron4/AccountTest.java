@@ -0,0 +1,78 @@
+package sebron4;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests deposits and withdrawals on single accounts, at the edges of what an amount in öre
+ * can hold.
+ * @author Sebastian Rone, sebron-4
+ */
+class AccountTest {
+    @Test
+    void rejectsWithdrawalsBeyondTheRangeOfABalance() {
+        Account account = AccountProducts.CREDIT.open(1001);
+        assertTrue(account.withdrawOre(100)); // -1,00 kr
+        assertFalse(account.withdrawOre(Long.MAX_VALUE));
+        assertFalse(account.withdrawOre(Long.MAX_VALUE - 100));
+        assertEquals(-100, account.getBalanceOre());
+        assertEquals(1, account.getTransactionLog().size());
+
+        assertTrue(account.withdrawOre(499_900)); // Down to the credit limit of 5 000 kr
+        assertFalse(account.withdrawOre(1));
+        assertEquals(-500_000, account.getBalanceOre());
+    }
+
+    @Test
+    void rejectsAmountsWhoseFeeOrBalanceWouldOverflow() {
+        Account savings = AccountProducts.SAVINGS.open(1001);
+        assertTrue(savings.deposit(100_000));
+        assertTrue(savings.withdrawOre(100)); // The first withdrawal is free
+        assertFalse(savings.withdrawOre(Money.ofKronor(1_000_000_000_000_000L))); // 1e15 kr, with a 2 % fee
+        assertFalse(savings.withdrawOre(Long.MAX_VALUE)); // The amount with its fee does not fit in a long
+        assertEquals(99_900, savings.getBalanceOre());
+
+        assertFalse(savings.deposit(Long.MAX_VALUE));
+        assertTrue(savings.deposit(Long.MAX_VALUE - 99_900));
+        assertFalse(savings.deposit(1));
+        assertEquals(Long.MAX_VALUE, savings.getBalanceOre());
+        assertTrue(savings.withdrawOre(Money.ofKronor(1_000_000_000_000_000L))); // Large, but covered by the balance
+        assertEquals(Long.MAX_VALUE - 102_000_000_000_000_000L, savings.getBalanceOre());
+    }
+
+    @Test
+    void rejectsAmountsInKronorThatCannotBeHeldInOre() {
+        BankLogic bank = new BankLogic();
+        assertTrue(bank.createCustomer("Karl", "Carlsson", "8505221898"));
+        int accountId = bank.createCreditAccount("8505221898");
+        for (double amount : new double[] {92233720368547758.0, Math.nextDown(Long.MAX_VALUE / 100.0), 1e300,
+                -92233720368547758.0, Double.NaN, Double.POSITIVE_INFINITY}) {
+            assertFalse(bank.withdraw(accountId, amount), String.valueOf(amount));
+            assertFalse(bank.withdraw("8505221898", accountId, amount), String.valueOf(amount));
+            assertFalse(AccountProducts.CREDIT.open(1001).withdraw(amount), String.valueOf(amount));
+        }
+        assertTrue(bank.withdraw(accountId, 100.0));
+    }
+
+    @Test
+    void changesNothingWhenTheLogIsClosed() {
+        Account.setTransactionLogFactory(accountNumber -> new OffHeapTransactionLog(new OffHeapArena()));
+        Account account;
+        try {
+            account = AccountProducts.CREDIT.open(1001);
+        } finally {
+            Account.setTransactionLogFactory(TransactionLogFactory.HEAP);
+        }
+        assertTrue(account.deposit(10_000));
+        account.closeTransactionLog(); // As when the account is replaced by a load
+        long version = account.getVersion();
+        assertThrows(IllegalStateException.class, () -> account.deposit(5_000));
+        assertThrows(IllegalStateException.class, () -> account.withdrawOre(5_000));
+        assertEquals(10_000, account.getBalanceOre());
+        assertEquals(version, account.getVersion());
+    }
+}
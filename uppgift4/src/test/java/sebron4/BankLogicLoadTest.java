@@ -0,0 +1,194 @@
+package sebron4;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests loading customers from a file: what happens to the bank and to the transaction logs
+ * of the accounts read when the load succeeds and when it fails.
+ * @author Sebastian Rone, sebron-4
+ */
+class BankLogicLoadTest {
+    @Test
+    void releasesTheLogsOfAStreamThatEndsPartway() throws IOException {
+        Path file = Files.createTempFile("bank", ".dat");
+        try {
+            saveBank(file);
+            byte[] saved = Files.readAllBytes(file);
+            for (int length : new int[] {saved.length / 2, saved.length * 3 / 4, saved.length - 1}) {
+                Files.write(file, Arrays.copyOf(saved, length)); // Ends inside the last account or later
+                OffHeapArena arena = new OffHeapArena();
+                BankLogic bank = new BankLogic();
+                assertTrue(bank.createCustomer("Olle", "Ohlsson", "0005221898"));
+                withLogsIn(arena, () -> assertThrows(IOException.class, () -> bank.loadCustomersFromFile(file.toString())));
+                assertEquals(0, arena.getUsedBytes(), "Blocks left after reading " + length + " bytes");
+                assertEquals(List.of("0005221898 Olle Ohlsson"), bank.getAllCustomers()); // Unchanged
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void releasesTheLogsOfDuplicateCustomers() throws IOException {
+        Path file = Files.createTempFile("bank", ".dat");
+        try {
+            Customer first = new Customer("Karl", "Carlsson", 198505221898L);
+            Customer second = new Customer("Carl", "Karlsson", 198505221898L);
+            first.addAccount(withHistory(AccountProducts.SAVINGS.open(1001)));
+            second.addAccount(withHistory(AccountProducts.CREDIT.open(1002)));
+            try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(file))) {
+                out.writeObject(new ArrayList<>(List.of(first, second)));
+            }
+            OffHeapArena arena = new OffHeapArena();
+            BankLogic bank = new BankLogic();
+            withLogsIn(arena, () -> assertThrows(InvalidObjectException.class, () -> bank.loadCustomersFromFile(file.toString())));
+            assertEquals(0, arena.getUsedBytes());
+            assertEquals(List.of(), bank.getAllCustomers());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void keepsTheLogsOfALoadThatSucceeds() throws IOException, ClassNotFoundException {
+        Path file = Files.createTempFile("bank", ".dat");
+        try {
+            int[] accountIds = saveBank(file);
+            OffHeapArena arena = new OffHeapArena();
+            BankLogic bank = new BankLogic();
+            Account.setTransactionLogFactory(accountNumber -> new OffHeapTransactionLog(arena));
+            try {
+                bank.loadCustomersFromFile(file.toString());
+            } finally {
+                Account.setTransactionLogFactory(TransactionLogFactory.HEAP);
+            }
+            assertTrue(arena.getUsedBytes() > 0);
+            for (int accountId : accountIds) {
+                assertEquals(3, bank.getTransactions(accountId).size());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void showsNumbersAsEnteredAfterALoad() throws IOException, ClassNotFoundException {
+        Path file = Files.createTempFile("bank", ".dat");
+        try {
+            BankLogic bank = new BankLogic();
+            assertTrue(bank.createCustomer("Karl", "Carlsson", "850522-1898"));
+            assertTrue(bank.createCustomer("Tolvan", "Tolvansson", "191212121212"));
+            bank.saveCustomersToFile(file.toString());
+            bank.loadCustomersFromFile(file.toString());
+            assertEquals(List.of("850522-1898 Karl Carlsson", "191212121212 Tolvan Tolvansson"), bank.getAllCustomers());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void detachesReplacedAccountsFromTheBalanceIndex() throws IOException, ClassNotFoundException {
+        Path file = Files.createTempFile("bank", ".dat");
+        try {
+            BankLogic bank = new BankLogic();
+            assertTrue(bank.createCustomer("Karl", "Carlsson", "8505221898"));
+            int accountId = bank.createSavingsAccount("8505221898");
+            assertTrue(bank.deposit(accountId, 1_000));
+            bank.saveCustomersToFile(file.toString());
+            Account held = (Account) bank.customerIterator().next().getAccounts().get(0); // Held from before the load
+
+            bank.loadCustomersFromFile(file.toString());
+            assertTrue(held.deposit(50_000)); // The old account still works, but is no longer the bank's
+            assertEquals(List.of(accountId), numbers(bank.getAccountsWithBalanceBetweenOre(AccountProducts.SAVINGS, 100_000, 100_001)));
+            assertEquals(List.of(), numbers(bank.getAccountsWithBalanceAboveOre(AccountProducts.SAVINGS, 100_000)));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Reads the account numbers a balance query returns.
+     *
+     * @param accountNumbers the result of the query
+     * @return the account numbers in order
+     */
+    private static List<Integer> numbers(PrimitiveIterator.OfInt accountNumbers) {
+        List<Integer> list = new ArrayList<>();
+        accountNumbers.forEachRemaining((IntConsumer) list::add);
+        return list;
+    }
+
+    /**
+     * Saves a bank with two customers, each with an account with some history.
+     *
+     * @param file the file to save to
+     * @return the account numbers
+     * @throws IOException if the file cannot be written
+     */
+    private static int[] saveBank(Path file) throws IOException {
+        BankLogic bank = new BankLogic();
+        assertTrue(bank.createCustomer("Karl", "Carlsson", "8505221898"));
+        assertTrue(bank.createCustomer("Tolvan", "Tolvansson", "121212-1212"));
+        int[] accountIds = {bank.createSavingsAccount("8505221898"), bank.createCreditAccount("121212-1212")};
+        for (int accountId : accountIds) {
+            withHistory(bank, accountId);
+        }
+        bank.saveCustomersToFile(file.toString());
+        return accountIds;
+    }
+
+    /**
+     * Makes three transactions on an account of a bank.
+     *
+     * @param bank the bank
+     * @param accountId the account number
+     */
+    private static void withHistory(BankLogic bank, int accountId) {
+        assertTrue(bank.deposit(accountId, 1_000));
+        assertTrue(bank.withdraw(accountId, 100.0));
+        assertTrue(bank.deposit(accountId, 50));
+    }
+
+    /**
+     * Makes three transactions on an account that is not part of any bank.
+     *
+     * @param account the account
+     * @return the account
+     */
+    private static Account withHistory(Account account) {
+        assertTrue(account.deposit(100_000));
+        assertTrue(account.withdrawOre(10_000));
+        assertTrue(account.deposit(5_000));
+        return account;
+    }
+
+    /**
+     * Runs a step with the logs of accounts created or loaded in it taken from the given arena.
+     *
+     * @param arena the arena
+     * @param step the step to run
+     */
+    private static void withLogsIn(OffHeapArena arena, Runnable step) {
+        Account.setTransactionLogFactory(accountNumber -> new OffHeapTransactionLog(arena));
+        try {
+            step.run();
+        } finally {
+            Account.setTransactionLogFactory(TransactionLogFactory.HEAP);
+        }
+    }
+}
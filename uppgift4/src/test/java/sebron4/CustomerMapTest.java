@@ -0,0 +1,123 @@
+package sebron4;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests CustomerMap against a LinkedHashMap, including paging while customers are added and
+ * removed between pages.
+ * @author Sebastian Rone, sebron-4
+ */
+class CustomerMapTest {
+    private static final long FIRST_KEY = 190001010000L; // Keys are handed out from here
+
+    @Test
+    void behavesLikeALinkedHashMap() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            CustomerMap map = new CustomerMap();
+            Map<Long, Customer> reference = new LinkedHashMap<>();
+            int range = 4 + random.nextInt(400);
+            for (int operation = 0; operation < 2_000; operation++) {
+                long key = FIRST_KEY + random.nextInt(range);
+                if (random.nextInt(3) == 0) {
+                    assertSame(reference.remove(key), map.remove(key));
+                } else {
+                    Customer customer = new Customer("Anna", "Andersson", key);
+                    assertEquals(!reference.containsKey(key), map.putIfAbsent(customer));
+                    reference.putIfAbsent(key, customer);
+                }
+                long probe = FIRST_KEY + random.nextInt(range);
+                assertSame(reference.get(probe), map.get(probe));
+                assertEquals(reference.containsKey(probe), map.containsKey(probe));
+                assertEquals(reference.size(), map.size());
+            }
+            assertEquals(new ArrayList<>(reference.values()), new ArrayList<>(map.values()));
+            assertEquals(new ArrayList<>(reference.values()), readAllPages(map, 1 + random.nextInt(20)));
+        }
+    }
+
+    @Test
+    void pagesWithoutSkippingOrRepeatingWhileTheMapChanges() {
+        Random random = new Random(8);
+        for (int round = 0; round < 100; round++) {
+            CustomerMap map = new CustomerMap();
+            long nextKey = FIRST_KEY;
+            for (int i = 0; i < 200; i++) {
+                map.putIfAbsent(new Customer("Erik", "Eriksson", nextKey++));
+            }
+            Set<Customer> presentThroughout = new LinkedHashSet<>(map.values());
+            Set<Customer> seen = new LinkedHashSet<>();
+            long cursor = 0;
+            do {
+                List<Customer> page = new ArrayList<>();
+                cursor = map.page(cursor, 1 + random.nextInt(15), page);
+                for (Customer customer : page) {
+                    assertTrue(seen.add(customer), "Repeated " + customer);
+                }
+                for (int change = random.nextInt(10); change > 0; change--) {
+                    if (random.nextBoolean()) {
+                        long key = FIRST_KEY + random.nextInt((int) (nextKey - FIRST_KEY));
+                        Customer removed = map.remove(key); // Forces compaction now and then
+                        presentThroughout.remove(removed);
+                    } else {
+                        map.putIfAbsent(new Customer("Eva", "Olsson", nextKey++));
+                    }
+                }
+            } while (map.hasAfter(cursor));
+            for (Customer customer : presentThroughout) {
+                assertTrue(seen.contains(customer), "Skipped " + customer);
+            }
+            List<Customer> order = new ArrayList<>(seen);
+            List<Customer> inMap = new ArrayList<>(map.values());
+            inMap.retainAll(seen);
+            order.retainAll(inMap);
+            assertEquals(inMap, order); // Pages follow insertion order
+        }
+    }
+
+    @Test
+    void keepsCursorsValidAcrossClear() {
+        CustomerMap map = new CustomerMap();
+        for (int i = 0; i < 10; i++) {
+            map.putIfAbsent(new Customer("Per", "Persson", FIRST_KEY + i));
+        }
+        long cursor = map.page(0, 10, new ArrayList<>());
+        map.clear();
+        assertFalse(map.hasAfter(cursor));
+        Customer added = new Customer("Per", "Persson", FIRST_KEY);
+        map.putIfAbsent(added);
+        assertTrue(map.hasAfter(cursor)); // Added after the cursor, so it is on the next page
+        List<Customer> page = new ArrayList<>();
+        map.page(cursor, 10, page);
+        assertEquals(List.of(added), page);
+    }
+
+    /**
+     * Reads every customer a page at a time.
+     *
+     * @param map the map
+     * @param limit the page size
+     * @return the customers in the order the pages gave them
+     */
+    private static List<Customer> readAllPages(CustomerMap map, int limit) {
+        List<Customer> all = new ArrayList<>();
+        long cursor = 0;
+        while (map.hasAfter(cursor)) {
+            cursor = map.page(cursor, limit, all);
+        }
+        return all;
+    }
+}
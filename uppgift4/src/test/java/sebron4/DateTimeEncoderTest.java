@@ -0,0 +1,128 @@
+package sebron4;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that DateTimeEncoder writes the same text as {@link SekFormat#DATE_TIME}, also when
+ * its cached day is reused and across daylight saving time changes.
+ * @author Sebastian Rone, sebron-4
+ */
+class DateTimeEncoderTest {
+    private static final String[] ZONES = {"Europe/Stockholm", "UTC", "America/New_York", "Australia/Lord_Howe",
+            "Asia/Kolkata", "Pacific/Apia"}; // Half-hour offsets, and a zone that skipped a whole day
+    private static final long MILLIS_PER_HOUR = 3_600_000L;
+
+    @Test
+    void writesRandomTimesLikeDateTimeFormatter() throws IOException {
+        long first = LocalDateTime.of(1900, 1, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+        long last = LocalDateTime.of(2100, 1, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+        Random random = new Random(21);
+        for (String zone : ZONES) {
+            inZone(zone, () -> {
+                DateTimeEncoder encoder = new DateTimeEncoder();
+                for (int i = 0; i < 20_000; i++) {
+                    assertTime(encoder, first + (long) (random.nextDouble() * (last - first)));
+                }
+            });
+        }
+    }
+
+    @Test
+    void reusesTheCachedDayForTimesInOrder() throws IOException {
+        Random random = new Random(19);
+        for (String zone : ZONES) {
+            inZone(zone, () -> {
+                DateTimeEncoder encoder = new DateTimeEncoder();
+                long time = LocalDateTime.of(2024, 1, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+                for (int i = 0; i < 50_000; i++) {
+                    time += random.nextInt(i % 100 == 0 ? 50_000_000 : 60_000); // Mostly the same day
+                    assertTime(encoder, time);
+                    assertTime(encoder, time); // The same timestamp again, as with a cached clock
+                }
+            });
+        }
+    }
+
+    @Test
+    void writesTimesAroundOffsetChanges() throws IOException {
+        for (String zone : ZONES) {
+            inZone(zone, () -> {
+                ZoneRules rules = ZoneId.systemDefault().getRules();
+                DateTimeEncoder encoder = new DateTimeEncoder();
+                Instant from = Instant.parse("2010-01-01T00:00:00Z");
+                for (ZoneOffsetTransition transition = rules.nextTransition(from);
+                     transition != null && transition.getInstant().isBefore(Instant.parse("2030-01-01T00:00:00Z"));
+                     transition = rules.nextTransition(transition.getInstant())) {
+                    long at = transition.toEpochSecond() * 1000;
+                    for (long offset = -3 * MILLIS_PER_HOUR; offset <= 3 * MILLIS_PER_HOUR; offset += 599_999) {
+                        assertTime(encoder, at + offset); // Forwards through the change
+                    }
+                    for (long offset = 26 * MILLIS_PER_HOUR; offset >= -26 * MILLIS_PER_HOUR; offset -= 1_799_999) {
+                        assertTime(encoder, at + offset); // Backwards, and to the days on either side
+                    }
+                    assertTime(encoder, at - 1);
+                    assertTime(encoder, at);
+                }
+            });
+        }
+    }
+
+    /**
+     * Checks one timestamp through both the StringBuilder and the Appendable path.
+     *
+     * @param encoder the encoder, with whatever day it has cached
+     * @param epochMillis the time in milliseconds since the epoch
+     * @throws IOException never, StringWriter does not fail
+     */
+    private static void assertTime(DateTimeEncoder encoder, long epochMillis) throws IOException {
+        String expected = SekFormat.DATE_TIME.format(
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()));
+        assertEquals(expected, encoder.append(new StringBuilder(), epochMillis).toString(),
+                epochMillis + " in " + ZoneId.systemDefault());
+        StringWriter writer = new StringWriter();
+        encoder.append(writer, epochMillis);
+        assertEquals(expected, writer.toString(), epochMillis + " in " + ZoneId.systemDefault());
+    }
+
+    /**
+     * Runs a check with another default time zone, which the encoder writes times in.
+     *
+     * @param zone the time zone ID
+     * @param check the check to run
+     * @throws IOException if the check throws it
+     */
+    private static void inZone(String zone, ZoneCheck check) throws IOException {
+        TimeZone previous = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone(zone));
+        try {
+            check.run();
+        } finally {
+            TimeZone.setDefault(previous);
+        }
+    }
+
+    /**
+     * A check run in a given time zone.
+     */
+    private interface ZoneCheck {
+        /**
+         * Runs the check.
+         *
+         * @throws IOException if appending fails
+         */
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,256 @@
+package sebron4;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * Measures how much heap the domain model retains. For each bank size it builds a synthetic
+ * bank one layer at a time: customers, their accounts, the accounts' transactions and then
+ * each of the indexes BankLogic keeps. It measures the used heap after a full collection
+ * between the layers, so every layer is charged exactly the memory it added.
+ *
+ * Runs headless, without BankApp or JavaFX, and prints a JSON report. It lives with the test
+ * sources so that it is not part of the application; build it with {@code mvn test-compile}:
+ * <pre>
+ * java -Xmx16g -cp target/classes:target/test-classes sebron4.FootprintBenchmark
+ *      [--customers 10000,1000000,10000000] [--accounts-per-customer 2]
+ *      [--transactions-per-account 10] [--log heap|columnar|offheap|tiered]
+ *      [--transactions-in-memory 4] [--out report.json]
+ * </pre>
+ * With {@code --log tiered} each account keeps at most {@code --transactions-in-memory}
+ * transactions on the heap and spills the rest to a segment file in a temporary directory,
+ * one file per account, so keep the sizes small.
+ * Sizes that do not fit in the heap are reported with an error instead of figures.
+ * @author Sebastian Rone, sebron-4
+ */
+public class FootprintBenchmark {
+    private static final String[] NAMES = {"Anna", "Erik", "Maria", "Lars", "Karin", "Per", "Eva", "Johan"}; // First names to draw from
+    private static final String[] SURNAMES = {"Andersson", "Johansson", "Karlsson", "Nilsson", "Eriksson", "Larsson", "Olsson", "Persson",
+            "Svensson", "Gustafsson", "Pettersson", "Jonsson", "Jansson", "Hansson", "Bengtsson", "Öberg"}; // Surnames to draw from
+    private static final LocalDate FIRST_BIRTH_DATE = LocalDate.of(1940, 1, 1); // Birth dates of the customers start here
+    private static final int BIRTH_DAYS = 20_000; // Birth dates to spread the customers over, with up to 1000 birth numbers each
+
+    private FootprintBenchmark() {
+    }
+
+    /**
+     * Runs the measurements and prints the report.
+     *
+     * @param args the options described in the class comment
+     * @throws IOException if the report cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        String sizes = "10000,1000000,10000000";
+        int accountsPerCustomer = 2;
+        int transactionsPerAccount = 10;
+        String log = "heap";
+        int transactionsInMemory = 4;
+        String out = null;
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for option: " + args[i]);
+            }
+            switch (args[i]) {
+                case "--customers" -> sizes = args[i + 1];
+                case "--accounts-per-customer" -> accountsPerCustomer = Integer.parseInt(args[i + 1]);
+                case "--transactions-per-account" -> transactionsPerAccount = Integer.parseInt(args[i + 1]);
+                case "--log" -> log = args[i + 1];
+                case "--transactions-in-memory" -> transactionsInMemory = Integer.parseInt(args[i + 1]);
+                case "--out" -> out = args[i + 1];
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        File segments = log.equals("tiered") ? Files.createTempDirectory("footprint").toFile() : null;
+        Account.setTransactionLogFactory(switch (log) {
+            case "heap" -> TransactionLogFactory.HEAP;
+            case "columnar" -> TransactionLogFactory.COLUMNAR;
+            case "offheap" -> TransactionLogFactory.OFF_HEAP;
+            case "tiered" -> TransactionLogFactory.tiered(segments, transactionsInMemory);
+            default -> throw new IllegalArgumentException("Unknown transaction log: " + log);
+        });
+
+        measure(1000, accountsPerCustomer, transactionsPerAccount); // Warm up so class loading is not charged to the first run
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"javaVersion\": \"").append(System.getProperty("java.version"))
+                .append("\",\n  \"maxHeapBytes\": ").append(Runtime.getRuntime().maxMemory())
+                .append(",\n  \"transactionLog\": \"").append(log).append("\",\n  \"runs\": [");
+        String separator = "\n";
+        for (String size : sizes.split(",")) {
+            json.append(separator);
+            json.append(measure(Integer.parseInt(size.trim()), accountsPerCustomer, transactionsPerAccount));
+            separator = ",\n";
+        }
+        json.append("\n  ]\n}\n");
+        if (segments != null) {
+            TieredTransactionLog.deleteSegments(segments); // Left by runs that ran out of memory
+            segments.delete();
+        }
+
+        if (out == null) {
+            System.out.print(json);
+        } else {
+            try (Writer writer = new FileWriter(out)) {
+                writer.write(json.toString());
+            }
+        }
+    }
+
+    /**
+     * Builds one synthetic bank and measures each layer of it.
+     *
+     * @param customerCount the number of customers
+     * @param accountsPerCustomer the number of accounts per customer, alternating savings and credit
+     * @param transactionsPerAccount the number of deposits per account
+     * @return the JSON object for the run
+     */
+    private static String measure(int customerCount, int accountsPerCustomer, int transactionsPerAccount) {
+        long accountCount = (long) customerCount * accountsPerCustomer;
+        long transactionCount = accountCount * transactionsPerAccount;
+        StringBuilder json = new StringBuilder();
+        json.append("    {\"customers\": ").append(customerCount)
+                .append(", \"accountsPerCustomer\": ").append(accountsPerCustomer)
+                .append(", \"transactionsPerAccount\": ").append(transactionsPerAccount);
+        try {
+            long base = usedHeap();
+            long directBase = directMemory();
+            Customer[] customers = new Customer[customerCount];
+            long arrays = usedHeap() - base; // Holder array, not part of the model
+            for (int i = 0; i < customerCount; i++) {
+                customers[i] = new Customer(NAMES[i % NAMES.length], SURNAMES[(i / NAMES.length) % SURNAMES.length],
+                        SocialSecurityNumber.of(FIRST_BIRTH_DATE.plusDays(i % BIRTH_DAYS), i / BIRTH_DAYS));
+            }
+            long customerBytes = usedHeap() - base - arrays;
+
+            long before = usedHeap();
+            int accountNumber = 1000;
+            for (Customer customer : customers) {
+                for (int a = 0; a < accountsPerCustomer; a++) {
+                    AccountProduct product = a % 2 == 0 ? AccountProducts.SAVINGS : AccountProducts.CREDIT;
+                    customer.addAccount(product.open(++accountNumber));
+                }
+            }
+            long accountBytes = usedHeap() - before;
+
+            before = usedHeap();
+            for (Customer customer : customers) {
+                for (Account account : customer.getAccounts()) {
+                    for (int t = 0; t < transactionsPerAccount; t++) {
+                        account.deposit(100 + t);
+                    }
+                }
+            }
+            long transactionBytes = usedHeap() - before;
+            long directBytes = directMemory() - directBase;
+
+            before = usedHeap();
+            CustomerMap customerMap = new CustomerMap();
+            for (Customer customer : customers) {
+                customerMap.putIfAbsent(customer);
+            }
+            long customerMapBytes = usedHeap() - before;
+
+            before = usedHeap();
+            CustomerNameIndex nameIndex = new CustomerNameIndex();
+            for (Customer customer : customers) {
+                nameIndex.add(customer);
+            }
+            long nameIndexBytes = usedHeap() - before;
+
+            before = usedHeap();
+            AccountMap accountMap = new AccountMap();
+            for (Customer customer : customers) {
+                for (Account account : customer.getAccounts()) {
+                    accountMap.put(account);
+                }
+            }
+            long accountMapBytes = usedHeap() - before;
+
+            before = usedHeap();
+            BalanceIndex balanceIndex = new BalanceIndex();
+            for (Account account : accountMap) {
+                balanceIndex.add(account);
+            }
+            long balanceIndexBytes = usedHeap() - before;
+
+            long total = customerBytes + accountBytes + transactionBytes + customerMapBytes + nameIndexBytes
+                    + accountMapBytes + balanceIndexBytes;
+            json.append(",\n     \"bytes\": {\"customers\": ").append(customerBytes)
+                    .append(", \"accounts\": ").append(accountBytes)
+                    .append(", \"transactions\": ").append(transactionBytes)
+                    .append(", \"customerMap\": ").append(customerMapBytes)
+                    .append(", \"customerNameIndex\": ").append(nameIndexBytes)
+                    .append(", \"accountMap\": ").append(accountMapBytes)
+                    .append(", \"balanceIndex\": ").append(balanceIndexBytes)
+                    .append(", \"total\": ").append(total)
+                    .append(", \"direct\": ").append(directBytes).append("},")
+                    .append("\n     \"bytesPer\": {\"customer\": ").append(perEntry(customerBytes, customerCount))
+                    .append(", \"account\": ").append(perEntry(accountBytes, accountCount))
+                    .append(", \"transaction\": ").append(perEntry(transactionBytes, transactionCount))
+                    .append(", \"customerMapEntry\": ").append(perEntry(customerMapBytes, customerCount))
+                    .append(", \"customerNameIndexEntry\": ").append(perEntry(nameIndexBytes, customerCount))
+                    .append(", \"accountMapEntry\": ").append(perEntry(accountMapBytes, accountCount))
+                    .append(", \"balanceIndexEntry\": ").append(perEntry(balanceIndexBytes, accountCount))
+                    .append(", \"customerWithEverything\": ").append(perEntry(total, customerCount)).append("}}");
+
+            // Keep every layer reachable until all of them have been measured
+            Reference.reachabilityFence(customers);
+            Reference.reachabilityFence(customerMap);
+            Reference.reachabilityFence(nameIndex);
+            Reference.reachabilityFence(accountMap);
+            Reference.reachabilityFence(balanceIndex);
+            for (Customer customer : customers) {
+                for (Account account : customer.getAccounts()) {
+                    account.closeTransactionLog(); // Give off-heap blocks and segment files back for the next run
+                }
+            }
+        } catch (OutOfMemoryError e) {
+            json.append(", \"error\": \"OutOfMemoryError\"}");
+        }
+        return json.toString();
+    }
+
+    /**
+     * Divides a byte count by a number of entries.
+     *
+     * @param bytes the bytes measured
+     * @param entries the number of entries
+     * @return the bytes per entry with one decimal, or 0 if there are no entries
+     */
+    private static String perEntry(long bytes, long entries) {
+        return entries == 0 ? "0" : String.format(Locale.ROOT, "%.1f", bytes / (double) entries);
+    }
+
+    /**
+     * Collects garbage until the used heap stops shrinking and returns it.
+     *
+     * @return the used heap in bytes
+     */
+    private static long usedHeap() {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long now = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+            if (now >= used) {
+                return now; // Nothing more was collected
+            }
+            used = now;
+        }
+        return used;
+    }
+
+    /**
+     * Returns the direct memory held by off-heap transaction logs.
+     *
+     * @return the direct memory in bytes
+     */
+    private static long directMemory() {
+        return OffHeapArena.shared().getUsedBytes();
+    }
+}
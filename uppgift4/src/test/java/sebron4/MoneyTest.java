@@ -0,0 +1,116 @@
+package sebron4;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests the fixed-point money arithmetic, comparing the rounding with BigDecimal.
+ * @author Sebastian Rone, sebron-4
+ */
+class MoneyTest {
+    private static final long[] LARGE = {Long.MAX_VALUE, Long.MAX_VALUE - 1, Long.MIN_VALUE, Long.MIN_VALUE + 1,
+            Long.MAX_VALUE / 2, Long.MIN_VALUE / 2, 4_611_686_018_427_387_905L}; // Values near the ends of the range
+
+    @Test
+    void dividesLikeBigDecimalInEveryRoundingMode() {
+        for (RoundingMode mode : RoundingMode.values()) {
+            if (mode == RoundingMode.UNNECESSARY) {
+                continue;
+            }
+            for (long dividend = -30; dividend <= 30; dividend++) {
+                for (long divisor = 1; divisor <= 8; divisor++) {
+                    assertDivides(dividend, divisor, mode);
+                }
+            }
+            for (long value : LARGE) {
+                for (long divisor : new long[] {1, 2, 3, 10_000, Long.MAX_VALUE / 2, Long.MAX_VALUE / 2 + 1, Long.MAX_VALUE}) {
+                    assertDivides(value, divisor, mode);
+                    assertDivides(value % divisor, divisor, mode);
+                }
+            }
+        }
+    }
+
+    @Test
+    void roundsHalfwayCasesByMode() {
+        assertEquals(2, Money.divide(5, 2, RoundingMode.HALF_EVEN));
+        assertEquals(4, Money.divide(7, 2, RoundingMode.HALF_EVEN));
+        assertEquals(-2, Money.divide(-5, 2, RoundingMode.HALF_EVEN));
+        assertEquals(3, Money.divide(5, 2, RoundingMode.HALF_UP));
+        assertEquals(-3, Money.divide(-5, 2, RoundingMode.HALF_UP));
+        assertEquals(2, Money.divide(5, 2, RoundingMode.HALF_DOWN));
+        assertEquals(-3, Money.divide(-5, 2, RoundingMode.FLOOR));
+        assertEquals(-2, Money.divide(-5, 2, RoundingMode.CEILING));
+    }
+
+    @Test
+    void rejectsInexactDivisionWithoutRounding() {
+        assertEquals(3, Money.divide(6, 2, RoundingMode.UNNECESSARY));
+        assertThrows(ArithmeticException.class, () -> Money.divide(7, 2, RoundingMode.UNNECESSARY));
+        assertThrows(IllegalArgumentException.class, () -> Money.divide(7, 0, RoundingMode.HALF_UP));
+        assertThrows(IllegalArgumentException.class, () -> Money.divide(7, -2, RoundingMode.HALF_UP));
+    }
+
+    @Test
+    void appliesRatesInBasisPoints() {
+        assertEquals(2_400, Money.applyRate(100_000, 240, Money.CALCULATION_ROUNDING)); // 2.4 % of 1 000 kr
+        assertEquals(-500, Money.applyRate(-10_000, 500, Money.CALCULATION_ROUNDING)); // 5 % of -100 kr
+        assertEquals(0, Money.applyRate(50, 100, RoundingMode.HALF_EVEN)); // 0.5 öre to the even 0
+        assertEquals(2, Money.applyRate(150, 100, RoundingMode.HALF_EVEN)); // 1.5 öre to the even 2
+        assertEquals(1, Money.applyRate(50, 100, RoundingMode.HALF_UP));
+        assertEquals(-2, Money.applyRate(-150, 100, RoundingMode.HALF_EVEN));
+        assertEquals(-1, Money.applyRate(-150, 100, RoundingMode.HALF_DOWN));
+        assertEquals(0, Money.applyRate(12_345, 0, Money.CALCULATION_ROUNDING));
+
+        for (long ore = -20_000; ore <= 20_000; ore += 7) {
+            for (long basisPoints : new long[] {1, 110, 200, 240, 500, 9_999}) {
+                BigDecimal exact = BigDecimal.valueOf(ore).multiply(BigDecimal.valueOf(basisPoints))
+                        .divide(BigDecimal.valueOf(Money.BASIS_POINTS), 0, Money.CALCULATION_ROUNDING);
+                assertEquals(exact.longValueExact(), Money.applyRate(ore, basisPoints, Money.CALCULATION_ROUNDING),
+                        ore + " öre at " + basisPoints + " basis points");
+            }
+        }
+        for (long ore : LARGE) {
+            for (long basisPoints : new long[] {-500, 2, 200, 240, 9_999}) {
+                BigDecimal exact = BigDecimal.valueOf(ore).multiply(BigDecimal.valueOf(basisPoints))
+                        .divide(BigDecimal.valueOf(Money.BASIS_POINTS), 0, Money.CALCULATION_ROUNDING);
+                assertEquals(exact.longValueExact(), Money.applyRate(ore, basisPoints, Money.CALCULATION_ROUNDING),
+                        ore + " öre at " + basisPoints + " basis points"); // The product does not fit in a long
+            }
+        }
+        assertThrows(ArithmeticException.class, () -> Money.applyRate(Long.MAX_VALUE, 20_000, Money.CALCULATION_ROUNDING));
+    }
+
+    @Test
+    void convertsKronorToOre() {
+        assertEquals(33_333, Money.ofKronor(333.33));
+        assertEquals(1, Money.ofKronor(0.005)); // Half up, read by its decimal representation
+        assertEquals(-1, Money.ofKronor(-0.005));
+        assertEquals(50_000, Money.ofKronor(500L));
+        assertThrows(ArithmeticException.class, () -> Money.ofKronor(Double.NaN));
+        assertThrows(ArithmeticException.class, () -> Money.ofKronor(Long.MAX_VALUE));
+
+        assertEquals(9_996, Money.parseKronor("99.955"));
+        assertEquals(25_000, Money.parseKronor(" 250 "));
+        assertEquals(-150, Money.parseKronor("-1.5"));
+        assertThrows(NumberFormatException.class, () -> Money.parseKronor("1,5"));
+        assertThrows(ArithmeticException.class, () -> Money.parseKronor("1e30"));
+    }
+
+    /**
+     * Checks one division against BigDecimal.
+     *
+     * @param dividend the dividend
+     * @param divisor the divisor
+     * @param mode the rounding mode
+     */
+    private static void assertDivides(long dividend, long divisor, RoundingMode mode) {
+        long expected = new BigDecimal(dividend).divide(new BigDecimal(divisor), 0, mode).longValueExact();
+        assertEquals(expected, Money.divide(dividend, divisor, mode), dividend + " / " + divisor + " " + mode);
+    }
+}
@@ -0,0 +1,93 @@
+package sebron4;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that SekEncoder writes amounts exactly as the Swedish currency NumberFormat does, and
+ * rates as account listings have always shown them.
+ * @author Sebastian Rone, sebron-4
+ */
+class SekEncoderTest {
+    private final NumberFormat currency = NumberFormat.getCurrencyInstance(Locale.of("sv", "SE"));
+
+    @Test
+    void writesAmountsLikeNumberFormat() throws IOException {
+        long[] edges = {0, 1, -1, 9, 10, 99, 100, -100, 99_999, 100_000, 123_456_789, -123_456_789,
+                Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE - 1, Long.MIN_VALUE + 1};
+        for (long ore : edges) {
+            assertAmount(ore);
+        }
+        for (long ore = 1; ore > 0 && ore <= Long.MAX_VALUE / 10; ore *= 10) {
+            assertAmount(ore); // Every number of digits, at each grouping boundary
+            assertAmount(ore - 1);
+            assertAmount(-ore);
+            assertAmount(1 - ore);
+        }
+        Random random = new Random(21);
+        for (int i = 0; i < 100_000; i++) {
+            assertAmount(random.nextLong() >> random.nextInt(64)); // Amounts of every size
+        }
+    }
+
+    @Test
+    void appendsAfterExistingText() {
+        StringBuilder out = new StringBuilder("Saldo: ");
+        SekEncoder.appendAmount(out, -579_000).append('.');
+        assertEquals("Saldo: " + currency.format(new BigDecimal("-5790.00")) + ".", out.toString());
+    }
+
+    @Test
+    void writesRatesLikeAccountListings() throws IOException {
+        assertEquals("2,4 %", SekEncoder.rateLabel(240));
+        assertEquals("1,1 %", SekEncoder.rateLabel(110));
+        assertEquals("5 %", SekEncoder.rateLabel(500));
+        assertEquals("-5 %", SekEncoder.rateLabel(-500));
+        assertEquals("1,3 %", SekEncoder.rateLabel(125)); // Half up
+        assertEquals("0,0 %", SekEncoder.rateLabel(0));
+
+        for (long basisPoints = -20_000; basisPoints <= 20_000; basisPoints++) {
+            String expected = formatInterestRate(basisPoints / 100.0);
+            assertEquals(expected, SekEncoder.rateLabel(basisPoints), basisPoints + " basis points");
+            StringWriter writer = new StringWriter();
+            SekEncoder.appendRate(writer, basisPoints);
+            assertEquals(expected, writer.toString(), basisPoints + " basis points");
+        }
+    }
+
+    /**
+     * Checks one amount through both the StringBuilder and the Appendable path.
+     *
+     * @param ore the amount in öre
+     * @throws IOException never, StringWriter does not fail
+     */
+    private void assertAmount(long ore) throws IOException {
+        String expected = currency.format(BigDecimal.valueOf(ore, 2));
+        assertEquals(expected, SekEncoder.appendAmount(new StringBuilder(), ore).toString(), ore + " öre");
+        StringWriter writer = new StringWriter();
+        SekEncoder.appendAmount(writer, ore);
+        assertEquals(expected, writer.toString(), ore + " öre");
+    }
+
+    /**
+     * Formats a rate in percent the way account listings did before rates were kept in basis
+     * points.
+     *
+     * @param interestRate the rate in percent
+     * @return the rate label
+     */
+    private static String formatInterestRate(double interestRate) {
+        if (interestRate == 5.0 || interestRate == -5.0) {
+            return (interestRate < 0 ? "-" : "") + "5 %";
+        }
+        return String.format(Locale.ROOT, "%.1f %%", interestRate).replace(".", ",");
+    }
+}
@@ -0,0 +1,168 @@
+package sebron4;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests parsing, formatting and validation of social security numbers, and how BankLogic
+ * uses them when customers are created and looked up.
+ * @author Sebastian Rone, sebron-4
+ */
+class SocialSecurityNumberTest {
+    private static final LocalDate TODAY = LocalDate.of(2024, 10, 16); // Decides the century of 10-digit numbers
+    private static final long TOLVAN = 191212121212L; // Skatteverket's test number, with a valid check digit
+
+    @Test
+    void parsesEveryFormToTheSameKey() {
+        assertEquals(TOLVAN, SocialSecurityNumber.parse("191212121212", TODAY));
+        assertEquals(TOLVAN, SocialSecurityNumber.parse("19121212-1212", TODAY));
+        assertEquals(198505221898L, SocialSecurityNumber.parse("8505221898", TODAY));
+        assertEquals(198505221898L, SocialSecurityNumber.parse("850522-1898", TODAY));
+        assertEquals(198505221898L, SocialSecurityNumber.parse("198505221898", TODAY));
+    }
+
+    @Test
+    void takesTheLatestCenturyThatIsNotInTheFuture() {
+        assertEquals(200005221898L, SocialSecurityNumber.parse("0005221898", TODAY));
+        assertEquals(202410161234L, SocialSecurityNumber.parse("2410161234", TODAY)); // Born today
+        assertEquals(192410171234L, SocialSecurityNumber.parse("2410171234", TODAY)); // Tomorrow is in the future
+        assertEquals(202410171234L, SocialSecurityNumber.parse("2410171234", TODAY.plusDays(1)));
+        assertEquals(198505821898L, SocialSecurityNumber.parse("8505821898", TODAY)); // Coordination number, day 22 + 60
+    }
+
+    @Test
+    void plusAddsAHundredYears() {
+        assertEquals(TOLVAN, SocialSecurityNumber.parse("121212+1212", TODAY));
+        assertEquals(182410171234L, SocialSecurityNumber.parse("241017+1234", TODAY));
+    }
+
+    @Test
+    void rejectsTextOfTheWrongForm() {
+        String[] invalid = {null, "", "12345", "85052218981", "850522_1898", "85O5221898", "85052-21898",
+                "1985052218980", "1985-05221898", "-850522189", "8505221898-", "19121212+12121"};
+        for (String text : invalid) {
+            assertEquals(SocialSecurityNumber.INVALID, SocialSecurityNumber.parse(text, TODAY), String.valueOf(text));
+        }
+    }
+
+    @Test
+    void formatsAndParsesBack() {
+        assertEquals("19121212-1212", SocialSecurityNumber.format(TOLVAN));
+        assertEquals("00010101-0000", SocialSecurityNumber.format(101010000L));
+        assertThrows(IllegalArgumentException.class, () -> SocialSecurityNumber.format(SocialSecurityNumber.INVALID));
+
+        Random random = new Random(6);
+        for (int i = 0; i < 10_000; i++) {
+            LocalDate birthDate = TODAY.minusDays(random.nextInt(365 * 99)); // Within the last hundred years
+            long key = SocialSecurityNumber.of(birthDate, random.nextInt(1000));
+            String text = SocialSecurityNumber.format(key);
+            assertEquals(key, SocialSecurityNumber.parse(text, TODAY), text);
+            assertEquals(key, SocialSecurityNumber.parse(text.substring(2), TODAY), text); // 10 digits with '-'
+            assertEquals(key, SocialSecurityNumber.parse(text.substring(2, 8) + text.substring(9), TODAY), text);
+        }
+    }
+
+    @Test
+    void formatsInTheFormTheNumberWasEnteredIn() {
+        String[] entered = {"8505221898", "850522-1898", "121212+1212", "198505221898", "19850522-1898", "19121212+1212"};
+        SocialSecurityNumber.Form[] forms = {SocialSecurityNumber.Form.TEN_DIGITS, SocialSecurityNumber.Form.TEN_DIGITS_DASH,
+                SocialSecurityNumber.Form.TEN_DIGITS_PLUS, SocialSecurityNumber.Form.TWELVE_DIGITS,
+                SocialSecurityNumber.Form.TWELVE_DIGITS_DASH, SocialSecurityNumber.Form.TWELVE_DIGITS_PLUS};
+        for (int i = 0; i < entered.length; i++) {
+            assertEquals(forms[i], SocialSecurityNumber.formOf(entered[i]), entered[i]);
+            assertEquals(entered[i], SocialSecurityNumber.format(SocialSecurityNumber.parse(entered[i], TODAY), forms[i]));
+        }
+        assertEquals("0005221898", SocialSecurityNumber.format(200005221898L, SocialSecurityNumber.Form.TEN_DIGITS));
+        assertEquals(null, SocialSecurityNumber.formOf("850522_1898"));
+        assertEquals(null, SocialSecurityNumber.formOf(null));
+    }
+
+    @Test
+    void validatesTheBirthDateAndCheckDigit() {
+        assertTrue(SocialSecurityNumber.isValid(TOLVAN));
+        assertFalse(SocialSecurityNumber.isValid(TOLVAN + 1)); // Wrong check digit
+        assertFalse(SocialSecurityNumber.isValid(SocialSecurityNumber.INVALID));
+        assertFalse(SocialSecurityNumber.isValid(12121212L)); // Not twelve digits
+
+        long leapDay = SocialSecurityNumber.of(LocalDate.of(2000, 2, 29), 123);
+        assertTrue(SocialSecurityNumber.isValid(leapDay));
+        assertFalse(SocialSecurityNumber.isValid(leapDay - 100 * 100_000_000L)); // 1900-02-29 did not exist, same check digit
+        assertFalse(SocialSecurityNumber.isValid(withCheckDigit(19851322189L))); // Month 13
+        assertFalse(SocialSecurityNumber.isValid(withCheckDigit(19850532189L))); // Day 32
+        assertFalse(SocialSecurityNumber.isValid(withCheckDigit(19850400189L))); // Day 0
+
+        assertTrue(SocialSecurityNumber.isValid(withCheckDigit(19850582189L))); // Coordination number, day 22 + 60
+        assertTrue(SocialSecurityNumber.isValid(withCheckDigit(19850591189L))); // Day 31 + 60 in May
+        assertFalse(SocialSecurityNumber.isValid(withCheckDigit(19850491189L))); // Day 31 + 60 in April
+    }
+
+    @Test
+    void findsTheCenturyBefore() {
+        assertTrue(SocialSecurityNumber.isWithoutCentury("8505221898"));
+        assertTrue(SocialSecurityNumber.isWithoutCentury("850522-1898"));
+        assertFalse(SocialSecurityNumber.isWithoutCentury("198505221898"));
+        assertFalse(SocialSecurityNumber.isWithoutCentury(null));
+        assertEquals(188505221898L, SocialSecurityNumber.previousCentury(198505221898L));
+        assertEquals(SocialSecurityNumber.INVALID, SocialSecurityNumber.previousCentury(5221898L));
+    }
+
+    @Test
+    void createsCustomersWithNumbersOfTheRightForm() {
+        BankLogic bank = new BankLogic();
+        assertTrue(bank.createCustomer("Olle", "Ohlsson", "0005221898"));
+        assertTrue(bank.createCustomer("Karl", "Carlsson", "8505221898"));
+        assertFalse(bank.createCustomer("Donald", "Duck", "8505221898"));
+        assertFalse(bank.createCustomer("Donald", "Duck", "198505221898")); // Same number with the century
+        assertTrue(bank.createCustomer("Carl", "Bengt", "20010709-0000")); // Form only, the check digit is wrong
+        assertFalse(bank.createCustomer("Carl", "Bengt", "2001-07-09"));
+        assertEquals("8505221898 Karl Carlsson", bank.getCustomer("850522-1898").get(0)); // Shown as entered
+
+        bank.setValidateSocialSecurityNumbers(true);
+        assertFalse(bank.createCustomer("Nicklas", "Gren", "19780204-0000"));
+        assertTrue(bank.createCustomer("Tolvan", "Tolvansson", "121212-1212"));
+    }
+
+    @Test
+    void findsACustomerCreatedBeforeTheBirthDateHadPassed() {
+        BankLogic bank = new BankLogic();
+        // What "8505221898" resolved to while 1985-05-22 was still in the future
+        assertTrue(bank.createCustomer("Karl", "Carlsson", "18850522-1898"));
+        assertFalse(bank.createCustomer("Karl", "Carlsson", "8505221898")); // Resolves to 1985 today
+        assertFalse(bank.createCustomer("Karl", "Carlsson", "850522-1898"));
+        assertEquals("18850522-1898 Karl Carlsson", bank.getCustomer("8505221898").get(0));
+        assertTrue(bank.createCustomer("Karl", "Carlsson", "198505221898")); // With the century it is another number
+    }
+
+    /**
+     * Completes a number with its correct check digit.
+     *
+     * @param withoutCheck the first eleven digits, YYYYMMDDNNN
+     * @return the key with the check digit that passes the Luhn test
+     */
+    private static long withCheckDigit(long withoutCheck) {
+        return withoutCheck * 10 + luhn(withoutCheck);
+    }
+
+    /**
+     * Computes the Luhn check digit of the ten-digit form, independently of the code under test.
+     *
+     * @param withoutCheck the first eleven digits, YYYYMMDDNNN
+     * @return the check digit
+     */
+    private static int luhn(long withoutCheck) {
+        String digits = String.valueOf(withoutCheck).substring(2); // YYMMDDNNN
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            int digit = (digits.charAt(i) - '0') * (i % 2 == 0 ? 2 : 1);
+            sum += digit / 10 + digit % 10;
+        }
+        return (10 - sum % 10) % 10;
+    }
+}
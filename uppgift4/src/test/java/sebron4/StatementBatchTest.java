@@ -0,0 +1,77 @@
+package sebron4;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests how a statement batch checks its arguments and what it cleans up before it runs.
+ * @author Sebastian Rone, sebron-4
+ */
+class StatementBatchTest {
+    @Test
+    void rejectsIntervalsThatAreNotPositive() throws IOException {
+        Path directory = Files.createTempDirectory("statements");
+        try {
+            for (long interval : new long[] {0, -1, Long.MIN_VALUE}) {
+                StatementBatch batch = new StatementBatch(List.of(), directory, null, null, 1);
+                assertThrows(IllegalArgumentException.class, () -> batch.run(null, interval));
+            }
+        } finally {
+            deleteAll(directory);
+        }
+    }
+
+    @Test
+    void deletesOnlyItsOwnUnfinishedStatements() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("statements");
+        try {
+            Account account = AccountProducts.SAVINGS.open(1001);
+            assertTrue(account.deposit(10_000));
+            Path unfinished = Files.createFile(directory.resolve("account-1002.txt.tmp"));
+            List<Path> others = List.of(directory.resolve("notes.tmp"), directory.resolve("account-.txt.tmp"),
+                    directory.resolve("account-12a.txt.tmp"), directory.resolve("account-1003.csv.tmp"));
+            for (Path other : others) {
+                Files.createFile(other);
+            }
+
+            List<StatementBatchProgress> reports = new ArrayList<>();
+            StatementBatchProgress progress = new StatementBatch(List.of(account), directory, null, null, 2)
+                    .run(reports::add, 1_000);
+            assertEquals(1, progress.getWritten());
+            assertTrue(Files.exists(directory.resolve("account-1001.txt")));
+            assertFalse(Files.exists(unfinished));
+            for (Path other : others) {
+                assertTrue(Files.exists(other), other.toString());
+            }
+            assertFalse(reports.isEmpty());
+        } finally {
+            deleteAll(directory);
+        }
+    }
+
+    /**
+     * Deletes a directory and the files in it.
+     *
+     * @param directory the directory
+     * @throws IOException if a file cannot be deleted
+     */
+    private static void deleteAll(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}